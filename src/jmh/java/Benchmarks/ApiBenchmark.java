@@ -0,0 +1,100 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+/**
+ * Measures full HTTP round trips through the Javalin app from SocialMediaController.startAPI(), running in the same
+ * JVM as the client, for several message table sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiBenchmark {
+    private static final int PORT = 8090;
+
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    Javalin app;
+    HttpClient webClient;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.populate(tableSize);
+        app = new SocialMediaController().startAPI();
+        app.start(PORT);
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public String getMessageById() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri("/messages/" + (ThreadLocalRandom.current().nextInt(tableSize) + 1))));
+    }
+
+    @Benchmark
+    public String postMessage() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri("/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":" + randomAccount()
+                        + ", \"message_text\": \"benchmark post\", \"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json"));
+    }
+
+    @Benchmark
+    public String getTimelinePage() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri("/accounts/" + randomAccount() + "/messages?limit=50")));
+    }
+
+    @Benchmark
+    public String login() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri("/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"testuser1\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json"));
+    }
+
+    private String send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + PORT + path);
+    }
+
+    private static int randomAccount() {
+        return ThreadLocalRandom.current().nextInt(BenchmarkData.ACCOUNTS) + 1;
+    }
+}
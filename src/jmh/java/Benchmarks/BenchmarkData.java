@@ -0,0 +1,63 @@
+package Benchmarks;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * Fills the database with a known data set before a benchmark trial: ACCOUNTS accounts (testuser1 from the reset
+ * script, then benchuser2 to benchuser100, all with password "password") and tableSize messages spread evenly across
+ * them, with message_ids 1 to tableSize.
+ */
+public class BenchmarkData {
+    /**
+     * Number of accounts the messages are spread across.
+     */
+    public static final int ACCOUNTS = 100;
+    /**
+     * Number of messages inserted per batch while populating.
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    /**
+     * Reset the database and insert the benchmark data set.
+     *
+     * @param tableSize the number of messages to insert.
+     */
+    public static void populate(int tableSize) {
+        ConnectionUtil.resetTestDatabase();
+        MessageDAO messageDAO = new MessageDAO();
+        AccountDAO accountDAO = new AccountDAO();
+        // the reset script inserts one account and one message; remove the message so ids start at 1 again
+        messageDAO.deleteMessageById(1);
+        resetMessageIds();
+        for (int i = 2; i <= ACCOUNTS; i++) {
+            accountDAO.insertAccount(new Account("benchuser" + i, "password"));
+        }
+        List<Message> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (int i = 0; i < tableSize; i++) {
+            chunk.add(new Message(i % ACCOUNTS + 1, "benchmark message " + i, 1669947792L + i));
+            if (chunk.size() == CHUNK_SIZE || i == tableSize - 1) {
+                messageDAO.insertMessages(chunk);
+                chunk.clear();
+            }
+        }
+    }
+
+    private static void resetMessageIds() {
+        try (Connection connection = ConnectionUtil.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("alter table message alter column message_id restart with 1");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
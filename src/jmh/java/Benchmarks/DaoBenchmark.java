@@ -0,0 +1,72 @@
+package Benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+
+/**
+ * Measures the DAO hot paths against the H2 database, for several message table sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    MessageDAO messageDAO;
+    AccountDAO accountDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.populate(tableSize);
+        messageDAO = new MessageDAO();
+        accountDAO = new AccountDAO();
+    }
+
+    @Benchmark
+    public Message insertMessage() {
+        return messageDAO.insertMessage(new Message(randomAccount(), "benchmark insert", 1669947792L));
+    }
+
+    @Benchmark
+    public Message getMessageById() {
+        return messageDAO.getMessageById(ThreadLocalRandom.current().nextInt(tableSize) + 1);
+    }
+
+    @Benchmark
+    public List<Message> getAllMessagesPostedBy() {
+        return messageDAO.getAllMessagesPostedBy(randomAccount());
+    }
+
+    @Benchmark
+    public Account getAccountByUsername() {
+        return accountDAO.getAccount("testuser1");
+    }
+
+    private static int randomAccount() {
+        return ThreadLocalRandom.current().nextInt(BenchmarkData.ACCOUNTS) + 1;
+    }
+}
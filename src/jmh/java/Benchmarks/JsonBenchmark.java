@@ -0,0 +1,91 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Model.Account;
+import Model.Message;
+import Service.MessageCache;
+import Util.JsonUtil;
+
+/**
+ * Measures JSON (de)serialization of Message and Account with the shared readers and writers in JsonUtil, against
+ * the previous approach of building a new ObjectMapper for every request, and the pre-encoded bytes the message cache
+ * keeps for hot messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private final Message message = new Message(1, 1, "benchmark message", 1669947792L);
+    private final Account account = new Account(1, "testuser1", "password");
+    private final String messageJson =
+            "{\"posted_by\":1, \"message_text\": \"benchmark message\", \"time_posted_epoch\": 1669947792}";
+    private final String accountJson = "{\"username\": \"testuser1\", \"password\": \"password\"}";
+    private final MessageCache messageCache = new MessageCache(64);
+
+    {
+        messageCache.put(message, messageCache.version(message.getMessage_id()));
+    }
+
+    @Benchmark
+    public Message readMessageShared() throws JsonProcessingException {
+        return JsonUtil.MESSAGE_READER.readValue(messageJson);
+    }
+
+    @Benchmark
+    public Message readMessageNewMapper() throws JsonProcessingException {
+        return new ObjectMapper().readValue(messageJson, Message.class);
+    }
+
+    @Benchmark
+    public byte[] writeMessageShared() throws JsonProcessingException {
+        return JsonUtil.MESSAGE_WRITER.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] writeMessageCached() {
+        return messageCache.getJson(message.getMessage_id());
+    }
+
+    @Benchmark
+    public byte[] writeMessageNewMapper() throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public Account readAccountShared() throws JsonProcessingException {
+        return JsonUtil.ACCOUNT_READER.readValue(accountJson);
+    }
+
+    @Benchmark
+    public Account readAccountNewMapper() throws JsonProcessingException {
+        return new ObjectMapper().readValue(accountJson, Account.class);
+    }
+
+    @Benchmark
+    public byte[] writeAccountShared() throws JsonProcessingException {
+        return JsonUtil.ACCOUNT_WRITER.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public byte[] writeAccountNewMapper() throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsBytes(account);
+    }
+}
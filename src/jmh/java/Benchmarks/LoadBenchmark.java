@@ -0,0 +1,88 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+/**
+ * Drives the API with many concurrent clients to compare Jetty's default platform thread pool with the virtual
+ * thread mode (server.virtualThreads) and its concurrency limiter. Sample time mode reports throughput along with
+ * p50/p99/p99.9 latency. Each mode runs in its own fork, because the controller reads the mode once when its class
+ * is initialized. Virtual threads need JDK 21 (or 19/20 with --enable-preview); on older JDKs the virtual mode falls
+ * back to platform threads and only measures the limiter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class LoadBenchmark {
+    private static final int PORT = 8091;
+    private static final int TABLE_SIZE = 10000;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    Javalin app;
+    HttpClient webClient;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.populate(TABLE_SIZE);
+        System.setProperty("server.virtualThreads", String.valueOf(threads.equals("virtual")));
+        app = new SocialMediaController().startAPI();
+        app.start(PORT);
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public int getMessageById() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri("/messages/" + (ThreadLocalRandom.current().nextInt(TABLE_SIZE) + 1))));
+    }
+
+    @Benchmark
+    public int getTimelinePage() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri("/accounts/"
+                + (ThreadLocalRandom.current().nextInt(BenchmarkData.ACCOUNTS) + 1) + "/messages?limit=50")));
+    }
+
+    /**
+     * Sends the request and returns its status without failing on 503, since shedding load is the limiter's job.
+     */
+    private int send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + PORT + path);
+    }
+}
@@ -0,0 +1,113 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+/**
+ * Runs a login storm against the API while a few other clients read messages, reporting throughput and p50/p99
+ * latency of both. It compares checking passwords on their own bounded executor ("separate") with sharing the db
+ * executor ("shared", accounts.passwordThreads=0), and always hashing (verifiedCacheSize=0) with remembering verified
+ * hashes. Every mode runs in its own fork, since the settings are read once when the classes are initialized.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class LoginBenchmark {
+    private static final int PORT = 8092;
+    private static final int TABLE_SIZE = 10000;
+    private static final int USERS = 8;
+
+    @Param({"separate", "shared"})
+    public String passwordPool;
+
+    @Param({"0", "10000"})
+    public String verifiedCacheSize;
+
+    @Param({"600000"})
+    public String passwordIterations;
+
+    Javalin app;
+    HttpClient webClient;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        BenchmarkData.populate(TABLE_SIZE);
+        if (passwordPool.equals("shared")) {
+            System.setProperty("accounts.passwordThreads", "0");
+        }
+        System.setProperty("accounts.verifiedCacheSize", verifiedCacheSize);
+        System.setProperty("accounts.passwordIterations", passwordIterations);
+        app = new SocialMediaController().startAPI();
+        app.start(PORT);
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        for (int i = 0; i < USERS; i++) {
+            if (send("/register", "loginuser" + i) != 200) {
+                throw new IllegalStateException("Could not register loginuser" + i);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(16)
+    public int login() throws IOException, InterruptedException {
+        return send("/login", "loginuser" + ThreadLocalRandom.current().nextInt(USERS));
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(4)
+    public int getMessageById() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri("/messages/" + (ThreadLocalRandom.current().nextInt(TABLE_SIZE) + 1)))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * Posts the credentials of the given user and returns the status without failing on 503, since shedding a storm
+     * is the password executor's job.
+     */
+    private int send(String path, String username) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + PORT + path);
+    }
+}
@@ -0,0 +1,64 @@
+package Benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Util.RateLimiter;
+
+/**
+ * Measures the cost of one rate limiter check from 16 threads at once, against a baseline that only picks the key.
+ * With keys=1 every thread takes tokens from the same bucket, the worst case for its compare-and-set; with more keys
+ * the threads mostly touch different buckets. ratePerSecond=1 measures the rejecting path (every bucket is empty
+ * after its first request), 1000000000 the allowing one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class RateLimiterBenchmark {
+
+    @Param({"1", "1000", "100000"})
+    public int keys;
+
+    @Param({"1", "1000000000"})
+    public int ratePerSecond;
+
+    RateLimiter<Integer> limiter;
+    Integer[] keyObjects;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new RateLimiter<>(ratePerSecond, 1, 60000);
+        keyObjects = new Integer[keys];
+        for (int i = 0; i < keys; i++) {
+            keyObjects[i] = i;
+        }
+    }
+
+    @Benchmark
+    public Integer baseline() {
+        return keyObjects[ThreadLocalRandom.current().nextInt(keys)];
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return limiter.tryAcquire(keyObjects[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+}
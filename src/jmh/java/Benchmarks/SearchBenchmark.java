@@ -0,0 +1,86 @@
+package Benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.AccountDAO;
+import DAO.InMemoryMessageStore;
+import Model.Message;
+import Service.SearchIndex;
+
+/**
+ * Measures search latency on an index of indexSize generated messages. Words are drawn from a 50000-word vocabulary
+ * with a Zipf-like distribution, so "w0" is in most messages, "w100" in a few percent of them and "w40000" in only a
+ * handful. A query on two common words is the worst case: their counts in a block bound its score only loosely, so
+ * most blocks of the shorter list have to be ranked before the search can stop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchBenchmark {
+    private static final int VOCABULARY = 50000;
+
+    @Param({"1000000"})
+    public int indexSize;
+
+    SearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = new SearchIndex();
+        index.build(new InMemoryMessageStore(new AccountDAO()) {
+            @Override
+            public void streamAllMessages(Consumer<Message> consumer) {
+                Random random = new Random(42);
+                StringBuilder text = new StringBuilder();
+                for (int id = 1; id <= indexSize; id++) {
+                    text.setLength(0);
+                    for (int word = 0; word < 12; word++) {
+                        // about 1/rank frequency
+                        int rank = (int) Math.pow(VOCABULARY, random.nextDouble()) - 1;
+                        text.append('w').append(rank).append(' ');
+                    }
+                    consumer.accept(new Message(id, id % BenchmarkData.ACCOUNTS + 1, text.toString(), 1669947792L + id));
+                }
+            }
+        });
+    }
+
+    @Benchmark
+    public List<Integer> rareWord() {
+        return index.search("w40000", 0, 20);
+    }
+
+    @Benchmark
+    public List<Integer> mediumWord() {
+        return index.search("w100", 0, 20);
+    }
+
+    @Benchmark
+    public List<Integer> rareAndCommonWords() {
+        return index.search("w1000 w0", 0, 20);
+    }
+
+    @Benchmark
+    public List<Integer> commonWords() {
+        return index.search("w1 w2", 0, 20);
+    }
+}
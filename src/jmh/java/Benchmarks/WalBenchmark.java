@@ -0,0 +1,80 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.AccountDAO;
+import DAO.InMemoryMessageStore;
+import DAO.MessageDAO;
+import DAO.MessageStore;
+import Model.Message;
+import Util.WriteAheadLog;
+
+/**
+ * Measures durable message insert throughput with 16 concurrent writers: H2 committing every statement, the
+ * in-memory store with a write-ahead log whose waiting writers force it as soon as the previous fsync is done, and
+ * the same log flushed by a background thread every 2 ms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class WalBenchmark {
+
+    @Param({"h2", "wal-group-commit", "wal-interval-2ms"})
+    public String mode;
+
+    MessageStore store;
+    WriteAheadLog log;
+    Path walFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.populate(1000);
+        if (mode.equals("h2")) {
+            store = new MessageDAO();
+            return;
+        }
+        walFile = Files.createTempFile("messages", ".wal");
+        log = new WriteAheadLog(walFile, mode.equals("wal-interval-2ms") ? 2 : 0);
+        InMemoryMessageStore memoryStore = new InMemoryMessageStore(new AccountDAO());
+        memoryStore.loadFrom(new MessageDAO());
+        memoryStore.recoverFrom(log);
+        store = memoryStore;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (log != null) {
+            log.close();
+            Files.deleteIfExists(walFile);
+        }
+    }
+
+    @Benchmark
+    public Message insertMessage() {
+        return store.insertMessage(new Message(ThreadLocalRandom.current().nextInt(BenchmarkData.ACCOUNTS) + 1,
+                "benchmark insert", 1669947792L));
+    }
+}
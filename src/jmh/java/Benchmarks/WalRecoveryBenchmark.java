@@ -0,0 +1,77 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.AccountDAO;
+import DAO.InMemoryMessageStore;
+import Model.Message;
+import Util.WriteAheadLog;
+
+/**
+ * Measures recovery time: rebuilding an in-memory store by replaying a write-ahead log of logSize inserts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class WalRecoveryBenchmark {
+
+    @Param({"10000", "100000"})
+    public int logSize;
+
+    Path walFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.populate(0);
+        walFile = Files.createTempFile("messages", ".wal");
+        try (WriteAheadLog log = new WriteAheadLog(walFile, 1)) {
+            InMemoryMessageStore store = new InMemoryMessageStore(new AccountDAO());
+            store.recoverFrom(log);
+            List<Message> chunk = new ArrayList<>();
+            for (int i = 0; i < logSize; i++) {
+                chunk.add(new Message(i % BenchmarkData.ACCOUNTS + 1, "recovered message " + i, 1669947792L + i));
+                if (chunk.size() == 1000) {
+                    store.insertMessages(chunk);
+                    chunk.clear();
+                }
+            }
+            store.insertMessages(chunk);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(walFile);
+    }
+
+    @Benchmark
+    public int recover() {
+        InMemoryMessageStore store = new InMemoryMessageStore(new AccountDAO());
+        try (WriteAheadLog log = new WriteAheadLog(walFile, 0)) {
+            store.recoverFrom(log);
+        }
+        return store.size();
+    }
+}
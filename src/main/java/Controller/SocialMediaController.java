@@ -1,15 +1,50 @@
 package Controller;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 import io.javalin.Javalin;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.ForbiddenResponse;
+import io.javalin.http.HttpResponseException;
+import io.javalin.http.ServiceUnavailableResponse;
+import io.javalin.http.UnauthorizedResponse;
+import io.javalin.json.JavalinJackson;
+import io.javalin.util.ConcurrencyUtil;
+import io.javalin.util.LoomUtil;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import DAO.AccountDAO;
+import DAO.MessageStore;
 import Model.Account;
+import Model.ImportResult;
 import Model.Message;
+import Model.MessagePage;
 import Service.AccountService;
+import Service.AsyncAccountService;
+import Service.AsyncMessageService;
+import Service.MessageBatchWriter;
 import Service.MessageService;
+import Util.BoundedExecutor;
+import Util.ConcurrencyLimiter;
+import Util.ConnectionUtil;
+import Util.JsonUtil;
+import Util.Metrics;
+import Util.PoolExhaustedException;
+import Util.RateLimiter;
+import Util.SessionTokens;
 
 /**
  * You will need to write your own endpoints and handlers for your controller. The endpoints you will need can be
@@ -17,15 +52,103 @@ import Service.MessageService;
  * refer to prior mini-project labs and lecture materials for guidance on how a controller may be built.
  */
 public class SocialMediaController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocialMediaController.class);
+    /**
+     * When the messages.batchWrites system property is true, POST /messages queues messages to be inserted in JDBC
+     * batches by a MessageBatchWriter instead of inserting each one with its own statement.
+     */
+    private static final boolean BATCH_WRITES = Boolean.getBoolean("messages.batchWrites");
+    /**
+     * When the server.virtualThreads system property is true, Jetty runs every request on its own virtual thread
+     * (on a JDK that has them) instead of a bounded pool of platform threads, and a ConcurrencyLimiter sized to the
+     * connection pool sits in front of the handlers so the extra threads queue briefly and then get a 503 instead of
+     * piling up on the pool. Set server.maxConcurrentRequests to change the limit, or to use a limiter in the default
+     * mode as well (0 disables it).
+     */
+    private static final boolean VIRTUAL_THREADS = Boolean.getBoolean("server.virtualThreads");
+    /**
+     * When the auth.requireToken system property is true, POST /messages and PATCH and DELETE
+     * /messages/{message_id} are rejected with 401 unless they carry a session token from POST /login; otherwise a
+     * request without one falls back to trusting posted_by (or, for PATCH and DELETE, not checking the message's
+     * owner). POST /messages/bulk always needs a token.
+     */
+    private static final boolean REQUIRE_TOKEN = Boolean.getBoolean("auth.requireToken");
+    /**
+     * Name of the request attribute holding the account_id of a verified session token.
+     */
+    private static final String SESSION_ACCOUNT = "session_account_id";
+    /**
+     * Name of the request attribute set while the request holds a limiter permit.
+     */
+    private static final String LIMITER_PERMIT = "limiter_permit";
+
     AccountService accountService;
     MessageService messageService;
+    AsyncAccountService asyncAccountService;
+    AsyncMessageService asyncMessageService;
+    BoundedExecutor dbExecutor;
+    BoundedExecutor passwordExecutor;
+    MessageBatchWriter batchWriter;
+    ConcurrencyLimiter limiter;
+    SessionTokens sessionTokens;
+    RateLimiter<String> ipRateLimiter;
+    RateLimiter<Integer> accountRateLimiter;
 
     /**
      * No-args constructor for a socialMediaController to instantiate a plain accountService and messageService.
+     * In batch write mode, the messageService writes new messages through a MessageBatchWriter.
+     * Handlers reach both services through async wrappers that run them on a bounded executor with db.executorThreads
+     * workers (the connection pool size by default) and room for db.executorQueueCapacity waiting calls.
+     * Registration and login hash passwords, which is deliberately slow, so they run on a separate executor with
+     * accounts.passwordThreads workers (half the processors by default, 0 to share the db executor) and room for
+     * accounts.passwordQueueCapacity waiting calls, and a burst of logins cannot starve the message endpoints.
+     * Login issues session tokens signed as configured by the auth.tokenSecret and auth.tokenTtlSeconds system
+     * properties (see SessionTokens).
+     * Writes can be rate limited per client IP (limits.ipRate requests per second with bursts of limits.ipBurst) and
+     * per session token account (limits.accountRate and limits.accountBurst); both are off by default (rate 0), and
+     * the buckets of clients idle for limits.idleMillis are dropped.
      */
     public SocialMediaController() {
         accountService = new AccountService();
-        messageService = new MessageService();
+        if (BATCH_WRITES) {
+            MessageStore messageStore = MessageStore.fromConfig();
+            batchWriter = new MessageBatchWriter(messageStore, new AccountDAO(),
+                    Integer.getInteger("messages.batchSize", 100), Long.getLong("messages.batchDelayMillis", 5),
+                    Integer.getInteger("messages.batchQueueCapacity", 10000));
+            messageService = new MessageService(messageStore, batchWriter);
+            Metrics.gauge("executor_queue_depth{executor=\"message-batch-writer\"}", "Tasks waiting for a worker thread.",
+                    batchWriter::getQueueDepth);
+        } else {
+            messageService = new MessageService();
+        }
+        dbExecutor = new BoundedExecutor("db",
+                Integer.getInteger("db.executorThreads", ConnectionUtil.getPoolStats().getMax_size()),
+                Integer.getInteger("db.executorQueueCapacity", 1000));
+        int passwordThreads = Integer.getInteger("accounts.passwordThreads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        if (passwordThreads > 0) {
+            passwordExecutor = new BoundedExecutor("password", passwordThreads,
+                    Integer.getInteger("accounts.passwordQueueCapacity", 100));
+            asyncAccountService = new AsyncAccountService(accountService, dbExecutor, passwordExecutor);
+        } else {
+            asyncAccountService = new AsyncAccountService(accountService, dbExecutor);
+        }
+        asyncMessageService = new AsyncMessageService(messageService, dbExecutor);
+        int maxConcurrentRequests = Integer.getInteger("server.maxConcurrentRequests",
+                VIRTUAL_THREADS ? ConnectionUtil.getPoolStats().getMax_size() : 0);
+        if (maxConcurrentRequests > 0) {
+            limiter = new ConcurrencyLimiter(maxConcurrentRequests, Long.getLong("server.limiterTimeoutMillis", 1000));
+        }
+        sessionTokens = SessionTokens.fromConfig();
+        long idleMillis = Long.getLong("limits.idleMillis", 60000);
+        int ipRate = Integer.getInteger("limits.ipRate", 0);
+        if (ipRate > 0) {
+            ipRateLimiter = new RateLimiter<>(ipRate, Integer.getInteger("limits.ipBurst", 20), idleMillis);
+        }
+        int accountRate = Integer.getInteger("limits.accountRate", 0);
+        if (accountRate > 0) {
+            accountRateLimiter = new RateLimiter<>(accountRate, Integer.getInteger("limits.accountBurst", 20), idleMillis);
+        }
     }
 
     /**
@@ -34,16 +157,68 @@ public class SocialMediaController {
      * @return a Javalin app object which defines the behavior of the Javalin controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
+        if (VIRTUAL_THREADS && !LoomUtil.INSTANCE.getLoomAvailable()) {
+            LOGGER.warn("server.virtualThreads is set but this JDK has no virtual threads; using platform threads");
+        }
+        ConcurrencyUtil.INSTANCE.setUseLoom(VIRTUAL_THREADS);
+        Javalin app = Javalin.create(config -> {
+            config.jsonMapper(new JavalinJackson(JsonUtil.MAPPER));
+            config.requestLogger.http(SocialMediaController::recordRequest);
+        });
+        if (limiter != null) {
+            Metrics.gauge("http_limiter_active_requests", "Requests currently holding a limiter permit.",
+                    limiter::getActive);
+            Metrics.gauge("http_limiter_waiting_requests", "Requests waiting for a limiter permit.",
+                    limiter::getWaiters);
+            Metrics.gauge("http_limiter_rejected_total", "Requests rejected with 503 by the limiter.",
+                    limiter::getRejected);
+        }
+        if (ipRateLimiter != null) {
+            Metrics.gauge("http_rate_limited_total{key=\"ip\"}", "Requests rejected with 429 by the rate limiter.",
+                    ipRateLimiter::getRejected);
+            Metrics.gauge("http_rate_limiter_buckets{key=\"ip\"}", "Clients with a rate limiter bucket.",
+                    ipRateLimiter::getSize);
+        }
+        if (accountRateLimiter != null) {
+            Metrics.gauge("http_rate_limited_total{key=\"account\"}", "Requests rejected with 429 by the rate limiter.",
+                    accountRateLimiter::getRejected);
+            Metrics.gauge("http_rate_limiter_buckets{key=\"account\"}", "Clients with a rate limiter bucket.",
+                    accountRateLimiter::getSize);
+        }
+        app.events(event -> event.serverStopped(dbExecutor::close));
+        if (passwordExecutor != null) {
+            app.events(event -> event.serverStopped(passwordExecutor::close));
+        }
+        if (batchWriter != null) {
+            app.events(event -> event.serverStopped(batchWriter::close));
+        }
+        app.exception(PoolExhaustedException.class, (e, context) -> context.status(503));
+        if (limiter != null) {
+            app.before(this::acquirePermit);
+            app.after(this::releasePermit);
+        }
+        app.before("messages/bulk", context -> authenticate(context, true));
+        app.before("messages", context -> authenticate(context, REQUIRE_TOKEN));
+        app.before("messages/{message_id}", context -> authenticate(context, REQUIRE_TOKEN));
+        if (ipRateLimiter != null || accountRateLimiter != null) {
+            app.before(this::limitRate);
+        }
         app.get("example-endpoint", this::exampleHandler);
         app.post("register", this::registerHandler);
         app.post("login", this::loginHandler);
         app.post("messages", this::postMessageHandler);
+        app.post("messages/bulk", this::importMessagesHandler);
         app.get("messages", this::getAllMessagesHandler);
+        app.get("messages/search", this::searchMessagesHandler);
         app.get("messages/{message_id}", this::getMessageByIdHandler);
         app.delete("messages/{message_id}", this::deleteMessageByIdHandler);
         app.patch("messages/{message_id}", this::updateMessageByIdHandler);
         app.get("accounts/{account_id}/messages", this::getAllMessagesFromAccountHandler);
+        app.get("stats/pool", this::poolStatsHandler);
+        app.get("stats/account-cache", this::accountCacheStatsHandler);
+        app.get("stats/timeline-cache", this::timelineCacheStatsHandler);
+        app.get("stats/message-cache", this::messageCacheStatsHandler);
+        app.get("metrics", this::metricsHandler);
         return app;
     }
 
@@ -57,115 +232,570 @@ public class SocialMediaController {
 
     /**
      * Handler to post a new account.
-     * The Jackson ObjectMapper will automatically convert the JSON body of the POST request into an Account object.
+     * The shared Jackson reader will automatically convert the JSON body of the POST request into an Account object.
      * If accountService returns a null value, the API will return status code 400 (client error).
      * @param context the Javalin Context object manages information about both the HTTP request and response.
      * @throws JsonProcessingException will be thrown if there is an issue converting JSON into an object.
      */
     private void registerHandler(Context context) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Account account = mapper.readValue(context.body(), Account.class);
-        Account addedAccount = accountService.addAccount(account);
-        if (addedAccount == null) {
-            context.status(400);
-        } else {
-            context.json(addedAccount).status(200);
-        }
+        Account account = JsonUtil.ACCOUNT_READER.readValue(context.body());
+        respondAsync(context, asyncAccountService.addAccount(account), addedAccount -> {
+            if (addedAccount == null) {
+                context.status(400);
+            } else {
+                writeJson(context, JsonUtil.ACCOUNT_WRITER, addedAccount);
+            }
+        });
     }
 
     /**
      * Handler to verify account credentials.
-     * The Jackson ObjectMapper will automatically convert the JSON body of the POST request into an Account object.
+     * The shared Jackson reader will automatically convert the JSON body of the POST request into an Account object.
      * If accountService returns a null value, the API will return status code 401 (unauthorized).
+     * Otherwise a session token for the account is sent in the X-Session-Token response header, to be passed back as
+     * "Authorization: Bearer <token>" on the routes that need an account.
      * @param context the Javalin Context object manages information about both the HTTP request and response.
      * @throws JsonProcessingException will be thrown if there is an issue converting JSON into an object.
      */
     private void loginHandler(Context context) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Account account = mapper.readValue(context.body(), Account.class);
-        Account verifiedAccount = accountService.verifyAccount(account);
-        if (verifiedAccount == null) {
-            context.status(401);
-        } else {
-            context.json(verifiedAccount).status(200);
-        }
+        Account account = JsonUtil.ACCOUNT_READER.readValue(context.body());
+        respondAsync(context, asyncAccountService.verifyAccount(account), verifiedAccount -> {
+            if (verifiedAccount == null) {
+                context.status(401);
+            } else {
+                context.header("X-Session-Token", sessionTokens.issue(verifiedAccount.getAccount_id()));
+                writeJson(context, JsonUtil.ACCOUNT_WRITER, verifiedAccount);
+            }
+        });
     }
 
     /**
      * Handler to post a new message.
-     * The Jackson ObjectMapper will automatically convert the JSON body of the POST request into an Message object.
+     * The shared Jackson reader will automatically convert the JSON body of the POST request into an Message object.
      * If messageService returns a null value, the API will return status code 400 (client error).
+     * In batch write mode the response is completed asynchronously once the message's batch has been inserted, and a
+     * full write queue returns status code 503 (service unavailable).
+     * With a session token, posted_by defaults to the token's account, and the account is not looked up again; a
+     * posted_by naming a different account returns status code 403 (forbidden).
      * @param context the Javalin Context object manages information about both the HTTP request and response.
      * @throws JsonProcessingException will be thrown if there is an issue converting JSON into an object.
      */
     private void postMessageHandler(Context context) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Message message = mapper.readValue(context.body(), Message.class);
-        Message addedMessage = messageService.addMessage(message);
-        if (addedMessage == null) {
-            context.status(400);
-        } else {
-            context.json(addedMessage).status(200);
+        Message message = JsonUtil.MESSAGE_READER.readValue(context.body());
+        Integer account_id = context.attribute(SESSION_ACCOUNT);
+        if (account_id != null) {
+            if (message.getPosted_by() == 0) {
+                message.setPosted_by(account_id);
+            } else if (message.getPosted_by() != account_id) {
+                throw new ForbiddenResponse("posted_by does not match the session token");
+            }
+        }
+        respondAsync(context, asyncMessageService.addMessage(message, account_id != null), addedMessage -> {
+            if (addedMessage == null) {
+                context.status(400);
+            } else {
+                writeJson(context, JsonUtil.MESSAGE_WRITER, addedMessage);
+            }
+        });
+    }
+
+    /**
+     * Handler to import many messages at once from a JSON array or a stream of newline-delimited JSON messages.
+     * The request needs a session token, and the messages are posted by its account: a message without posted_by gets
+     * the token's account_id, and one naming another account is rejected with status 403 in its result.
+     * The body is parsed and imported in chunks as it arrives, and a JSON array with one result per message (its
+     * index, a 200 or 400 status, and the inserted message or the reason it was rejected) is streamed back, so neither
+     * the request nor the response is ever held in memory whole. If the body stops being valid JSON, the messages
+     * before that point are still imported and a final result reports the parse error.
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     * @throws IOException will be thrown if there is an issue reading the request or writing the response.
+     */
+    private void importMessagesHandler(Context context) throws IOException {
+        try (MappingIterator<Message> parsed = JsonUtil.MESSAGE_READER.readValues(context.bodyInputStream())) {
+            ParsedMessages messages = new ParsedMessages(parsed);
+            this.<ImportResult>streamArray(context, consumer -> {
+                messageService.importMessages(messages, context.attribute(SESSION_ACCOUNT), consumer);
+                if (messages.error != null) {
+                    consumer.accept(new ImportResult(messages.count, "malformed JSON: " + messages.error.getOriginalMessage()));
+                }
+            });
         }
     }
 
     /**
      * Handler to retrieve all messages.
+     * Without paging parameters the messages are streamed to the response as they are read from the database.
+     * If a since or until query parameter is provided, only the messages posted in that time range are streamed,
+     * oldest first.
+     * If a limit or after query parameter is provided, only one page of messages is returned (keyset pagination on
+     * message_id), and the cursor for the following page is sent in the X-Next-Cursor response header.
+     * Invalid paging or time range parameters, or both kinds at once, will return status code 400 (client error).
      * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @throws IOException will be thrown if there is an issue writing the response.
      */
-    private void getAllMessagesHandler(Context context) {
-        List<Message> messages = messageService.getAllMessages();
-        context.json(messages).status(200);
+    private void getAllMessagesHandler(Context context) throws IOException {
+        long[] range = timeRange(context, "after");
+        if (range != null) {
+            this.<Message>streamArray(context, consumer -> messageService.streamMessagesBetween(range[0], range[1], consumer));
+            return;
+        }
+        if (context.queryParam("limit") == null && context.queryParam("after") == null) {
+            this.<Message>streamArray(context, messageService::streamAllMessages);
+            return;
+        }
+        int limit = context.queryParamAsClass("limit", Integer.class)
+                .check(l -> l > 0 && l <= MessageService.MAX_PAGE_SIZE, "limit must be between 1 and " + MessageService.MAX_PAGE_SIZE)
+                .getOrDefault(MessageService.DEFAULT_PAGE_SIZE);
+        int after = context.queryParamAsClass("after", Integer.class)
+                .check(a -> a >= 0, "after must not be negative")
+                .getOrDefault(0);
+        respondAsync(context, asyncMessageService.getMessagesPage(after, limit), page -> writePage(context, page));
+    }
+
+    /**
+     * Handler to search message_text for the words of the q query parameter.
+     * Messages containing every word are returned best match first, one page at a time; the cursor for the following
+     * page (an offset) is sent in the X-Next-Cursor response header and passed back in the offset query parameter.
+     * A missing or wordless q, or invalid paging parameters, will return status code 400 (client error).
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void searchMessagesHandler(Context context) {
+        String query = context.queryParamAsClass("q", String.class).get();
+        int limit = context.queryParamAsClass("limit", Integer.class)
+                .check(l -> l > 0 && l <= MessageService.MAX_SEARCH_PAGE_SIZE, "limit must be between 1 and " + MessageService.MAX_SEARCH_PAGE_SIZE)
+                .getOrDefault(MessageService.DEFAULT_SEARCH_PAGE_SIZE);
+        int offset = context.queryParamAsClass("offset", Integer.class)
+                .check(o -> o >= 0 && o <= MessageService.MAX_SEARCH_OFFSET, "offset must be between 0 and " + MessageService.MAX_SEARCH_OFFSET)
+                .getOrDefault(0);
+        respondAsync(context, asyncMessageService.searchMessages(query, offset, limit), page -> writePage(context, page));
     }
 
     /**
      * Handler to retrieve a message by it's message_id.
+     * The message's JSON encoding comes from the message cache when it is hot, so it is written without serializing
+     * the message again. The response carries the message's ETag, and a request whose If-None-Match has the current
+     * one returns status code 304 (not modified) without reading the message.
      * @param context The Javalin Context object manages information about both the HTTP request and response.
      */
     private void getMessageByIdHandler(Context context) {
         int message_id = Integer.valueOf(context.pathParam("message_id"));
-        Message message = messageService.getMessageById(message_id);
-        if (message != null) {
-            context.json(message).status(200);
+        if (notModified(context, MessageService.getMessageETag(message_id))) {
+            return;
         }
+        respondAsync(context, asyncMessageService.getMessageJsonById(message_id), json -> {
+            if (json != null) {
+                context.contentType(ContentType.APPLICATION_JSON).result(json).status(200);
+            }
+        });
     }
 
     /**
      * Handler to delete a message by it's message_id.
+     * With a session token, a message posted by another account is not deleted and returns status code 403 (forbidden).
      * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @throws JsonProcessingException will be thrown if there is an issue converting the message into JSON.
      */
-    private void deleteMessageByIdHandler(Context context) {
+    private void deleteMessageByIdHandler(Context context) throws JsonProcessingException {
         int message_id = Integer.valueOf(context.pathParam("message_id"));
-        Message message = messageService.deleteMessageById(message_id);
-        if (message != null) {
-            context.json(message).status(200);
-        }
+        CompletableFuture<Message> deleted = checkOwner(context, message_id)
+                .thenCompose(owned -> asyncMessageService.deleteMessageById(message_id));
+        respondAsync(context, deleted, message -> {
+            if (message != null) {
+                writeJson(context, JsonUtil.MESSAGE_WRITER, message);
+            }
+        });
     }
 
     /**
      * Handler to patch a message by it's message_id to update the message's text.
+     * With a session token, a message posted by another account is not updated and returns status code 403 (forbidden).
      * @param context The Javalin Context object manages information about both the HTTP request and response.
      * @throws JsonProcessingException will be thrown if there is an issue parsing message_text from the JSON body of the request.
      */
     private void updateMessageByIdHandler(Context context) throws JsonProcessingException {
         int message_id = Integer.valueOf(context.pathParam("message_id"));
-        ObjectMapper mapper = new ObjectMapper();
-        String message_text = mapper.readTree(context.body()).get("message_text").asText();
-        Message message = messageService.updateMessageById(message_id, message_text);
-        if (message == null) {
-            context.status(400);
-        } else {
-            context.json(message).status(200);
-        }
+        String message_text = JsonUtil.MAPPER.readTree(context.body()).get("message_text").asText();
+        CompletableFuture<Message> updated = checkOwner(context, message_id)
+                .thenCompose(owned -> asyncMessageService.updateMessageById(message_id, message_text));
+        respondAsync(context, updated, message -> {
+            if (message == null) {
+                context.status(400);
+            } else {
+                writeJson(context, JsonUtil.MESSAGE_WRITER, message);
+            }
+        });
     }
 
     /**
      * Handler to retrieve all messages from the specified account.
+     * Without paging parameters the messages are streamed to the response as they are read from the database.
+     * If a since or until query parameter is provided, only the account's messages posted in that time range are
+     * streamed, oldest first.
+     * If a limit or before query parameter is provided, only one page of the account's timeline is returned, newest
+     * first, and the cursor for the following page is sent in the X-Next-Cursor response header.
+     * Invalid paging or time range parameters, or both kinds at once, will return status code 400 (client error).
+     * Both kinds of response carry the ETag of the account's timeline, and a request whose If-None-Match has the
+     * current one returns status code 304 (not modified) without reading any messages.
      * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @throws IOException will be thrown if there is an issue writing the response.
      */
-    private void getAllMessagesFromAccountHandler(Context context) {
+    private void getAllMessagesFromAccountHandler(Context context) throws IOException {
         int account_id = Integer.valueOf(context.pathParam("account_id"));
-        List<Message> messages = accountService.getAllMessagesFromAccount(account_id);
-        context.json(messages).status(200);
+        long[] range = timeRange(context, "before");
+        if (notModified(context, MessageService.getTimelineETag(account_id))) {
+            return;
+        }
+        if (range != null) {
+            this.<Message>streamArray(context, consumer -> accountService.streamMessagesFromAccountBetween(account_id,
+                    range[0], range[1], consumer));
+            return;
+        }
+        if (context.queryParam("limit") == null && context.queryParam("before") == null) {
+            this.<Message>streamArray(context, consumer -> accountService.streamAllMessagesFromAccount(account_id, consumer));
+            return;
+        }
+        int limit = context.queryParamAsClass("limit", Integer.class)
+                .check(l -> l > 0 && l <= MessageService.MAX_PAGE_SIZE, "limit must be between 1 and " + MessageService.MAX_PAGE_SIZE)
+                .getOrDefault(MessageService.DEFAULT_PAGE_SIZE);
+        respondAsync(context, asyncAccountService.getTimelinePage(account_id, context.queryParam("before"), limit),
+                page -> writePage(context, page));
+    }
+
+    /**
+     * Handler to retrieve the connection pool's current usage (active, idle, waiters and acquire latency).
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void poolStatsHandler(Context context) {
+        context.json(ConnectionUtil.getPoolStats()).status(200);
+    }
+
+    /**
+     * Handler to retrieve the account cache's size and hit ratio.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void accountCacheStatsHandler(Context context) {
+        context.json(AccountDAO.getSharedCacheStats()).status(200);
+    }
+
+    /**
+     * Handler to retrieve the timeline cache's size (in messages) and hit ratio.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void timelineCacheStatsHandler(Context context) {
+        context.json(MessageService.getSharedTimelineCacheStats()).status(200);
+    }
+
+    /**
+     * Handler to retrieve the message cache's size and hit ratio.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void messageCacheStatsHandler(Context context) {
+        context.json(MessageService.getSharedMessageCacheStats()).status(200);
+    }
+
+    /**
+     * Handler to retrieve request and query metrics in the Prometheus text format.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void metricsHandler(Context context) {
+        context.contentType("text/plain; version=0.0.4; charset=utf-8").result(Metrics.toPrometheusText()).status(200);
+    }
+
+    /**
+     * Read the since and until query parameters, the earliest and latest time_posted_epoch of a time range (both
+     * included). Either one may be left out to leave that end of the range open.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @param cursor the name of the route's paging cursor parameter, which cannot be combined with a time range.
+     * @return the since and until of the range, or null if neither parameter was provided.
+     * @throws BadRequestResponse if a parameter is not a number, until is before since, or a paging parameter was
+     * provided as well.
+     */
+    private long[] timeRange(Context context, String cursor) {
+        if (context.queryParam("since") == null && context.queryParam("until") == null) {
+            return null;
+        }
+        if (context.queryParam("limit") != null || context.queryParam(cursor) != null) {
+            throw new BadRequestResponse("since and until cannot be combined with limit or " + cursor);
+        }
+        long since = context.queryParamAsClass("since", Long.class).getOrDefault(Long.MIN_VALUE);
+        long until = context.queryParamAsClass("until", Long.class)
+                .check(u -> u >= since, "until must not be before since")
+                .getOrDefault(Long.MAX_VALUE);
+        return new long[] {since, until};
+    }
+
+    /**
+     * Send the given ETag with the response, and answer with status code 304 (not modified) if the request's
+     * If-None-Match header lists it. Tags are compared weakly, i.e. ignoring a W/ prefix.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @param etag the current ETag of the requested resource.
+     * @return true if the response is complete, false if the handler should go on and write the resource.
+     */
+    private boolean notModified(Context context, String etag) {
+        context.header("ETag", etag);
+        String ifNoneMatch = context.header("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                context.status(304);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Before-handler of the routes that need an account, run for every method except GET and HEAD. A valid
+     * "Authorization: Bearer <token>" header puts the token's account_id in the SESSION_ACCOUNT request attribute; the
+     * token is checked in memory, without a database lookup. A missing, malformed, forged or expired token returns
+     * status code 401 (unauthorized), except that a request without an Authorization header is let through unless
+     * the token is required.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @param required whether a request without an Authorization header is rejected.
+     */
+    private void authenticate(Context context, boolean required) {
+        String method = context.method().name();
+        if (method.equals("GET") || method.equals("HEAD") || context.attribute(SESSION_ACCOUNT) != null) {
+            return;
+        }
+        String authorization = context.header("Authorization");
+        if (authorization == null && !required) {
+            return;
+        }
+        int account_id = authorization != null && authorization.startsWith("Bearer ")
+                ? sessionTokens.verify(authorization.substring("Bearer ".length()).trim()) : -1;
+        if (account_id < 0) {
+            context.header("WWW-Authenticate", "Bearer");
+            throw new UnauthorizedResponse();
+        }
+        context.attribute(SESSION_ACCOUNT, account_id);
+    }
+
+    /**
+     * Check that the message is the session token's account's own before it is changed. Without a session token, or
+     * if there is no such message, nothing is checked; messages never change hands, so the check cannot go stale
+     * before the change is made.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @param message_id the message about to be changed.
+     * @return a future that completes once the check has passed, or fails with ForbiddenResponse.
+     */
+    private CompletableFuture<Void> checkOwner(Context context, int message_id) {
+        Integer account_id = context.attribute(SESSION_ACCOUNT);
+        if (account_id == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return asyncMessageService.getMessageById(message_id).thenAccept(message -> {
+            if (message != null && message.getPosted_by() != account_id) {
+                throw new ForbiddenResponse("message was posted by another account");
+            }
+        });
+    }
+
+    /**
+     * Before-handler that rate limits every request except GETs: first by client IP, then, for a request with a
+     * verified session token, by its account. A request over either limit returns status code 429 (too many requests)
+     * with a Retry-After header giving the seconds until it would be allowed.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void limitRate(Context context) {
+        String method = context.method().name();
+        if (method.equals("GET") || method.equals("HEAD")) {
+            return;
+        }
+        long waitNanos = ipRateLimiter != null ? ipRateLimiter.tryAcquire(context.ip()) : 0;
+        Integer account_id = context.attribute(SESSION_ACCOUNT);
+        if (waitNanos == 0 && account_id != null && accountRateLimiter != null) {
+            waitNanos = accountRateLimiter.tryAcquire(account_id);
+        }
+        if (waitNanos > 0) {
+            context.header("Retry-After", Long.toString(Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000)));
+            throw new HttpResponseException(429, "Too many requests");
+        }
+    }
+
+    /**
+     * Before-handler that lets the request go on only once the limiter grants a permit, and answers with status code
+     * 503 (service unavailable) if none is free within the limiter's timeout. The permit is released by releasePermit,
+     * which Javalin runs after the endpoint's future (see respondAsync) has completed, so the limit bounds the work an
+     * async route hands to an executor and not only the handler that submits it.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void acquirePermit(Context context) {
+        if (!limiter.tryAcquire()) {
+            throw new ServiceUnavailableResponse();
+        }
+        context.attribute(LIMITER_PERMIT, Boolean.TRUE);
+    }
+
+    /**
+     * After-handler that returns the permit taken by acquirePermit, if the request got one.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void releasePermit(Context context) {
+        if (context.attribute(LIMITER_PERMIT) != null) {
+            context.attribute(LIMITER_PERMIT, null);
+            limiter.release();
+        }
+    }
+
+    /**
+     * Request logger that records every finished request into the per-route metrics. Requests that matched no route
+     * are grouped under a single "unmatched" route, so unknown paths cannot grow the number of series.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @param executionTimeMs how long Javalin took to handle the request, in milliseconds.
+     */
+    private static void recordRequest(Context context, Float executionTimeMs) {
+        String route;
+        try {
+            route = context.endpointHandlerPath();
+        } catch (IllegalStateException e) {
+            route = "unmatched";
+        }
+        Metrics.recordRequest(context.method().name(), route, context.statusCode(),
+                (long) (executionTimeMs * 1_000_000));
+    }
+
+    /**
+     * Complete the request once the given future completes: its result is passed to the responder, a rejected call
+     * (the executor's or batch writer's queue is full, or no pooled connection became free in time) returns status
+     * code 503 (service unavailable), an IllegalArgumentException returns its message with status code 400 (client
+     * error), and any other failure is logged and returns status code 500.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @param result the pending result of a service call.
+     * @param responder writes the response for a successful result.
+     */
+    private <T> void respondAsync(Context context, CompletableFuture<T> result, Responder<T> responder) {
+        context.future(() -> result.handle((value, e) -> {
+            Throwable failure = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (failure == null) {
+                try {
+                    responder.respond(value);
+                } catch (Exception writeFailure) {
+                    failure = writeFailure;
+                }
+            }
+            if (failure instanceof RejectedExecutionException || failure instanceof PoolExhaustedException) {
+                context.status(503);
+            } else if (failure instanceof IllegalArgumentException) {
+                context.result(failure.getMessage()).status(400);
+            } else if (failure instanceof HttpResponseException) {
+                context.status(((HttpResponseException) failure).getStatus());
+            } else if (failure != null) {
+                LOGGER.error("{} {} failed", context.method(), context.path(), failure);
+                context.status(500);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Writes the response for the result of an asynchronous service call.
+     */
+    private interface Responder<T> {
+        void respond(T value) throws Exception;
+    }
+
+    /**
+     * Write one page of messages with status code 200, sending the cursor for the following page (if any) in the
+     * X-Next-Cursor response header.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @param page the page to write.
+     */
+    private void writePage(Context context, MessagePage page) {
+        if (page.getNext_cursor() != null) {
+            context.header("X-Next-Cursor", page.getNext_cursor());
+        }
+        context.json(page.getMessages()).status(200);
+    }
+
+    /**
+     * Write a single object to the response with one of the pre-built writers, with status code 200.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @param writer the writer for the object's type.
+     * @param value the object to write.
+     * @throws JsonProcessingException will be thrown if there is an issue converting the object into JSON.
+     */
+    private void writeJson(Context context, ObjectWriter writer, Object value) throws JsonProcessingException {
+        context.contentType(ContentType.APPLICATION_JSON).result(writer.writeValueAsBytes(value)).status(200);
+    }
+
+    /**
+     * Write objects to the response as a JSON array, one element at a time, with a Jackson JsonGenerator directly on
+     * the response output stream. No intermediate list or String of the whole result is built.
+     * If the source fails, the array is left unclosed so a client never mistakes a cut-off result for a complete one;
+     * when nothing has been sent yet the buffered output is discarded and the failure becomes an error status instead.
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     * @param source passes each object to be written to the consumer it is given.
+     * @throws IOException will be thrown if there is an issue writing the response.
+     */
+    private <T> void streamArray(Context context, Consumer<Consumer<T>> source) throws IOException {
+        context.status(200).contentType(ContentType.APPLICATION_JSON);
+        try (JsonGenerator generator = JsonUtil.MAPPER.getFactory().createGenerator(context.outputStream())
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)) {
+            generator.writeStartArray();
+            source.accept(element -> {
+                try {
+                    generator.writeObject(element);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            if (!context.res().isCommitted()) {
+                context.res().reset();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Iterates over the messages of a request body until the end of the body or the first JSON parse error, which is
+     * kept rather than thrown so the messages before it can still be imported.
+     */
+    private static class ParsedMessages implements Iterator<Message> {
+        private final MappingIterator<Message> parsed;
+        private Message next;
+        private int count;
+        private JsonProcessingException error;
+
+        ParsedMessages(MappingIterator<Message> parsed) {
+            this.parsed = parsed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && error == null) {
+                try {
+                    if (parsed.hasNextValue()) {
+                        next = parsed.nextValue();
+                    }
+                } catch (JsonProcessingException e) {
+                    error = e;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Message next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Message message = next;
+            next = null;
+            count++;
+            return message;
+        }
     }
 }
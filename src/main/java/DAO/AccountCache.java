@@ -0,0 +1,117 @@
+package DAO;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import Model.Account;
+import Util.CacheStats;
+
+/**
+ * A size-bounded, least-recently-used cache of accounts, indexed by both account_id and username. Accounts are never
+ * deleted once inserted, and only their stored password hash is ever updated (through updatePassword), so entries only
+ * leave the cache through eviction or a database reset. Account objects are mutable, so copies are stored and handed
+ * out.
+ */
+public class AccountCache {
+    /**
+     * The maximum number of accounts held at once.
+     */
+    private final int maxSize;
+    /**
+     * Cached accounts by account_id, in least-recently-used order.
+     */
+    private final LinkedHashMap<Integer, Account> byId;
+    /**
+     * account_id of every cached account, by username.
+     */
+    private final Map<String, Integer> idsByUsername = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of accounts held at once.
+     */
+    public AccountCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.byId = new LinkedHashMap<Integer, Account>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Account> eldest) {
+                if (size() > AccountCache.this.maxSize) {
+                    idsByUsername.remove(eldest.getValue().getUsername());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param account_id the account_id to look up.
+     * @return a copy of the cached account, or null on a miss.
+     */
+    public synchronized Account get(int account_id) {
+        return record(byId.get(account_id));
+    }
+
+    /**
+     * @param username the username to look up.
+     * @return a copy of the cached account, or null on a miss.
+     */
+    public synchronized Account get(String username) {
+        Integer account_id = idsByUsername.get(username);
+        return record(account_id == null ? null : byId.get(account_id));
+    }
+
+    /**
+     * Add an account that exists in the database to the cache.
+     *
+     * @param account an account including its account_id.
+     */
+    public synchronized void put(Account account) {
+        byId.put(account.getAccount_id(), copy(account));
+        idsByUsername.put(account.getUsername(), account.getAccount_id());
+    }
+
+    /**
+     * Replace the stored password hash of an account, if it is cached. Does not count as a hit or a miss.
+     *
+     * @param account_id the account_id of the updated account.
+     * @param password the new stored password hash.
+     */
+    public synchronized void updatePassword(int account_id, String password) {
+        Account cached = byId.get(account_id);
+        if (cached != null) {
+            cached.setPassword(password);
+        }
+    }
+
+    /**
+     * Drop every cached account.
+     */
+    public synchronized void clear() {
+        byId.clear();
+        idsByUsername.clear();
+    }
+
+    /**
+     * @return a snapshot of the cache's size and hit ratio.
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(byId.size(), maxSize, hits.sum(), misses.sum());
+    }
+
+    private Account record(Account cached) {
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(cached);
+    }
+
+    private static Account copy(Account account) {
+        return new Account(account.getAccount_id(), account.getUsername(), account.getPassword());
+    }
+}
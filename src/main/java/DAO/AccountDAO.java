@@ -5,116 +5,230 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import Model.Account;
+import Util.CacheStats;
 import Util.ConnectionUtil;
+import Util.Metrics;
 
 public class AccountDAO {
-    
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountDAO.class);
+    private static final Metrics.Timer GET_ACCOUNT_BY_ID_TIMER = Metrics.queryTimer("AccountDAO.getAccountById");
+    private static final Metrics.Timer GET_EXISTING_ACCOUNT_IDS_TIMER = Metrics.queryTimer("AccountDAO.getExistingAccountIds");
+    private static final Metrics.Timer GET_ACCOUNT_BY_USERNAME_TIMER = Metrics.queryTimer("AccountDAO.getAccountByUsername");
+    private static final Metrics.Timer INSERT_ACCOUNT_TIMER = Metrics.queryTimer("AccountDAO.insertAccount");
+    private static final Metrics.Timer UPDATE_PASSWORD_TIMER = Metrics.queryTimer("AccountDAO.updatePassword");
+
+    /**
+     * Account cache shared by every AccountDAO created with the no-args constructor. Cleared when the database is reset.
+     */
+    private static final AccountCache sharedCache = new AccountCache(Integer.getInteger("cache.accounts.maxSize", 10000));
+
+    static {
+        ConnectionUtil.addResetListener(sharedCache::clear);
+    }
+
+    AccountCache cache;
+
+    /**
+     * No-args constructor for an accountDAO that uses the shared account cache.
+     */
+    public AccountDAO() {
+        cache = sharedCache;
+    }
+
+    /**
+     * Constructor for an accountDAO when an accountCache is provided.
+     *
+     * @param cache
+     */
+    public AccountDAO(AccountCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return the hit ratio and size of the shared account cache.
+     */
+    public static CacheStats getSharedCacheStats() {
+        return sharedCache.getStats();
+    }
+
     /**
      * Retrieve a specific account using its account_id (used by MessageService to verify message is connected to an existing user).
+     * Served from the account cache when possible; accounts read from the database are added to it.
      *
      * @param id the account_id field of the account.
      * @return Account the Account object that is associated with the account_id.
      */
     public Account getAccount(int id) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM account WHERE account_id = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        Account cached = cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        String sql = "SELECT * FROM account WHERE account_id = ?";
+        try (Metrics.Sample sample = GET_ACCOUNT_BY_ID_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
 
             preparedStatement.setInt(1, id);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            while (rs.next()) {
-                Account account = new Account(rs.getInt("account_id"), rs.getString("username"),
-                        rs.getString("password"));
-                return account;
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    Account account = new Account(rs.getInt("account_id"), rs.getString("username"),
+                            rs.getString("password"));
+                    cache.put(account);
+                    return account;
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            GET_ACCOUNT_BY_ID_TIMER.recordError();
+            LOGGER.error("getAccount by account_id failed", e);
         }
         return null;
     }
-    
+
     /**
-     * Retrieve a specific account using its username.
+     * Find which of the given account_ids belong to existing accounts, with a single query for the ones that are not
+     * already in the account cache.
      *
-     * @param username the username of the account.
-     * @return Account an Account object that includes the account_id.
+     * @param ids the account_ids to check.
+     * @return Set<Integer> the subset of ids that exist in the database.
      */
-    public Account getAccount(String username) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM account WHERE username = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    public Set<Integer> getExistingAccountIds(Collection<Integer> ids) {
+        Set<Integer> existing = new HashSet<>();
+        Set<Integer> unknown = new HashSet<>();
+        for (Integer id : ids) {
+            if (existing.contains(id) || unknown.contains(id)) {
+                continue;
+            }
+            if (cache.get(id) != null) {
+                existing.add(id);
+            } else {
+                unknown.add(id);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return existing;
+        }
+        String sql = "SELECT * FROM account WHERE account_id = ANY(?)";
+        try (Metrics.Sample sample = GET_EXISTING_ACCOUNT_IDS_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
 
-            preparedStatement.setString(1, username);
+            preparedStatement.setObject(1, unknown.toArray(new Integer[0]));
 
-            ResultSet rs = preparedStatement.executeQuery();
-            while (rs.next()) {
-                Account account = new Account(rs.getInt("account_id"), rs.getString("username"),
-                        rs.getString("password"));
-                return account;
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    Account account = new Account(rs.getInt("account_id"), rs.getString("username"),
+                            rs.getString("password"));
+                    cache.put(account);
+                    existing.add(account.getAccount_id());
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            GET_EXISTING_ACCOUNT_IDS_TIMER.recordError();
+            LOGGER.error("getExistingAccountIds failed", e);
         }
-        return null;
+        return existing;
     }
-    
+
     /**
-     * Retrieve a specific account using its username and password.
+     * Retrieve a specific account using its username.
+     * Served from the account cache when possible; accounts read from the database are added to it.
      *
      * @param username the username of the account.
-     * @param password the password of the account.
      * @return Account an Account object that includes the account_id.
      */
-    public Account getAccount(String username, String password) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM account WHERE username = ? AND password = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    public Account getAccount(String username) {
+        Account cached = cache.get(username);
+        if (cached != null) {
+            return cached;
+        }
+        String sql = "SELECT * FROM account WHERE username = ?";
+        try (Metrics.Sample sample = GET_ACCOUNT_BY_USERNAME_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
 
             preparedStatement.setString(1, username);
-            preparedStatement.setString(2, password);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            while (rs.next()) {
-                Account account = new Account(rs.getInt("account_id"), rs.getString("username"),
-                        rs.getString("password"));
-                return account;
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    Account account = new Account(rs.getInt("account_id"), rs.getString("username"),
+                            rs.getString("password"));
+                    cache.put(account);
+                    return account;
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            GET_ACCOUNT_BY_USERNAME_TIMER.recordError();
+            LOGGER.error("getAccount by username failed", e);
         }
         return null;
     }
 
     /**
      * Add an account record into the database which matches the fields contained in the Account object.
+     * The inserted account is written through to the account cache.
      *
      * @param account an Account object that does not contain an account_id.
      * @return Account the account object that was successfully inserted into the database.
      */
     public Account insertAccount(Account account) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "INSERT INTO account (username, password) VALUES (?, ?)" ;
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        String sql = "INSERT INTO account (username, password) VALUES (?, ?)" ;
+        try (Metrics.Sample sample = INSERT_ACCOUNT_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             preparedStatement.setString(1, account.getUsername());
             preparedStatement.setString(2, account.getPassword());
 
             preparedStatement.executeUpdate();
-            ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys();
-            if (pkeyResultSet.next()) {
-                int generated_account_id = (int) pkeyResultSet.getLong(1);
-                return new Account(generated_account_id, account.getUsername(), account.getPassword());
+            try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                if (pkeyResultSet.next()) {
+                    int generated_account_id = (int) pkeyResultSet.getLong(1);
+                    Account insertedAccount = new Account(generated_account_id, account.getUsername(), account.getPassword());
+                    cache.put(insertedAccount);
+                    return insertedAccount;
+                }
             }
-        } catch(SQLException e) {
-            System.out.println(e.getMessage());
+        } catch (SQLException e) {
+            INSERT_ACCOUNT_TIMER.recordError();
+            LOGGER.error("insertAccount failed", e);
         }
         return null;
     }
+
+    /**
+     * Replace the stored password (hash) of one account record, and of its cached copy.
+     *
+     * @param account_id the account_id of the account.
+     * @param password the new stored password hash.
+     * @return boolean true if the account exists and was updated.
+     */
+    public boolean updatePassword(int account_id, String password) {
+        String sql = "UPDATE account SET password = ? WHERE account_id = ?";
+        try (Metrics.Sample sample = UPDATE_PASSWORD_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setString(1, password);
+            preparedStatement.setInt(2, account_id);
+
+            if (preparedStatement.executeUpdate() == 0) {
+                return false;
+            }
+            cache.updatePassword(account_id, password);
+            return true;
+        } catch (SQLException e) {
+            UPDATE_PASSWORD_TIMER.recordError();
+            LOGGER.error("updatePassword failed", e);
+        }
+        return false;
+    }
 }
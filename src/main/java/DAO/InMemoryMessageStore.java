@@ -0,0 +1,663 @@
+package DAO;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.WriteAheadLog;
+
+/**
+ * Keeps every message in process memory, so reads never touch the database. Messages are held in an array indexed
+ * by message_id (ids are handed out sequentially, so the array is dense), each account has a set of its
+ * messages sorted newest first for timeline pages, and one more set holds every message oldest first for time-range
+ * queries. Stored Message objects are never modified: an update replaces
+ * the message, so the objects handed out can be shared. A read-write lock lets reads run in parallel.
+ *
+ * Accounts still live in the database, and posted_by is checked against them through AccountDAO. On startup the
+ * store loads the snapshot file (messages.snapshotFile) if there is one, and the H2 message table otherwise. After
+ * the database is reset, the store reloads the message table on its next use, so rows written to the table right
+ * after the reset (e.g. test fixtures) are picked up. When a snapshot file is configured, the whole store is written
+ * to a new file every messages.snapshotIntervalMillis (if anything changed) and at shutdown, and moved over the
+ * previous snapshot in one step, so a crash mid-write leaves the last complete snapshot in place.
+ */
+public class InMemoryMessageStore implements MessageStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryMessageStore.class);
+
+    /**
+     * Newest first: time_posted_epoch descending, then message_id descending.
+     */
+    private static final Comparator<Message> TIMELINE_ORDER = Comparator
+            .comparingLong(Message::getTime_posted_epoch).thenComparingInt(Message::getMessage_id).reversed();
+    /**
+     * Oldest first: time_posted_epoch ascending, then message_id ascending.
+     */
+    private static final Comparator<Message> TIME_ORDER = TIMELINE_ORDER.reversed();
+    private static final int SNAPSHOT_MAGIC = 0x4d534753;
+    private static final int SNAPSHOT_VERSION = 1;
+    /**
+     * Write-ahead log record types.
+     */
+    private static final byte INSERT = 1;
+    private static final byte UPDATE = 2;
+    private static final byte DELETE = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AccountDAO accountDAO;
+    /**
+     * Messages by message_id; slots of deleted (or never used) ids are null.
+     */
+    private Message[] byId = new Message[1024];
+    /**
+     * Each account's messages, newest first.
+     */
+    private final Map<Integer, NavigableSet<Message>> timelines = new HashMap<>();
+    /**
+     * Every message, oldest first.
+     */
+    private NavigableSet<Message> byTime = new TreeSet<>(TIME_ORDER);
+    private int nextId = 1;
+    private int count;
+    private volatile boolean dirty;
+    /**
+     * Store to reload from before the next operation, set when the database is reset.
+     */
+    private volatile MessageStore pendingReload;
+    /**
+     * Log every change is appended to before it is acknowledged, or null if changes are not logged.
+     */
+    private WriteAheadLog log;
+
+    /**
+     * Create an empty store.
+     *
+     * @param accountDAO used to check that posted_by refers to an existing account.
+     */
+    public InMemoryMessageStore(AccountDAO accountDAO) {
+        this.accountDAO = accountDAO;
+    }
+
+    /**
+     * @return the store shared by the whole application, loaded and (if configured) snapshotted as described above.
+     */
+    static InMemoryMessageStore shared() {
+        return Shared.INSTANCE;
+    }
+
+    private static class Shared {
+        static final InMemoryMessageStore INSTANCE = create();
+
+        private static InMemoryMessageStore create() {
+            InMemoryMessageStore store = new InMemoryMessageStore(new AccountDAO());
+            String snapshotFile = System.getProperty("messages.snapshotFile");
+            Path snapshot = snapshotFile == null ? null : Paths.get(snapshotFile);
+            if (snapshot != null && Files.exists(snapshot)) {
+                store.loadSnapshot(snapshot);
+            } else {
+                store.loadFrom(new MessageDAO());
+            }
+            String walFile = System.getProperty("messages.walFile");
+            if (walFile != null) {
+                long start = System.nanoTime();
+                long replayed = store.recoverFrom(new WriteAheadLog(Paths.get(walFile),
+                        Long.getLong("messages.walFlushIntervalMillis", 0)));
+                LOGGER.info("Replayed {} write-ahead log records in {} ms", replayed,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            ConnectionUtil.addResetListener(() -> store.pendingReload = new MessageDAO());
+            if (snapshot != null) {
+                long interval = Long.getLong("messages.snapshotIntervalMillis", 1000);
+                ScheduledExecutorService snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "message-snapshotter");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                snapshotter.scheduleWithFixedDelay(() -> store.snapshotIfDirty(snapshot), interval, interval,
+                        TimeUnit.MILLISECONDS);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> store.snapshotIfDirty(snapshot)));
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Replace the contents of the store with every message in the given store. Any write-ahead log is emptied, since
+     * its records describe the old contents.
+     *
+     * @param source the store to copy, e.g. a MessageDAO reading the H2 message table.
+     */
+    public void loadFrom(MessageStore source) {
+        ArrayList<Message> messages = source.getAllMessages();
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (Message message : messages) {
+                add(message);
+            }
+            if (log != null) {
+                log.truncateBefore(log.mark());
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the contents of the store with the messages in a snapshot file written by snapshot().
+     *
+     * @param file the snapshot file.
+     * @throws UncheckedIOException if the file cannot be read or is not a snapshot.
+     */
+    public void loadSnapshot(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException(file + " is not a message snapshot");
+            }
+            int savedNextId = in.readInt();
+            int savedCount = in.readInt();
+            lock.writeLock().lock();
+            try {
+                clear();
+                for (int i = 0; i < savedCount; i++) {
+                    int message_id = in.readInt();
+                    int posted_by = in.readInt();
+                    long time_posted_epoch = in.readLong();
+                    add(new Message(message_id, posted_by, in.readUTF(), time_posted_epoch));
+                }
+                nextId = Math.max(nextId, savedNextId);
+                if (byId.length < nextId) {
+                    byId = Arrays.copyOf(byId, nextId);
+                }
+                dirty = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write every message to a temporary file next to the given one, then move it over the given file. The records
+     * of the write-ahead log (if any) that the snapshot already holds are then dropped from it.
+     *
+     * @param file the snapshot file.
+     * @throws UncheckedIOException if the snapshot cannot be written.
+     */
+    public void snapshot(Path file) {
+        Message[] messages;
+        int savedNextId;
+        long logMark;
+        lock.readLock().lock();
+        try {
+            messages = Arrays.copyOf(byId, nextId);
+            savedNextId = nextId;
+            logMark = log == null ? 0 : log.mark();
+            dirty = false;
+        } finally {
+            lock.readLock().unlock();
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                int savedCount = 0;
+                for (Message message : messages) {
+                    if (message != null) {
+                        savedCount++;
+                    }
+                }
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(savedNextId);
+                out.writeInt(savedCount);
+                for (Message message : messages) {
+                    if (message != null) {
+                        out.writeInt(message.getMessage_id());
+                        out.writeInt(message.getPosted_by());
+                        out.writeLong(message.getTime_posted_epoch());
+                        out.writeUTF(message.getMessage_text());
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (log != null) {
+                log.truncateBefore(logMark);
+            }
+        } catch (IOException e) {
+            dirty = true;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replay every record of the given write-ahead log onto the store (on top of a loaded snapshot, if any), then log
+     * every following change to it. Replaying a record the snapshot already holds has no further effect, so the log
+     * only needs to be cut back after a snapshot, not exactly at it.
+     *
+     * @param log the write-ahead log, opened with its records still in it.
+     * @return the number of records replayed.
+     */
+    public long recoverFrom(WriteAheadLog log) {
+        lock.writeLock().lock();
+        try {
+            long replayed = log.replay(this::apply);
+            this.log = log;
+            return replayed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Redo one logged change. Must hold the write lock.
+     */
+    private void apply(ByteBuffer record) {
+        byte type = record.get();
+        int message_id = record.getInt();
+        int posted_by = record.getInt();
+        long time_posted_epoch = record.getLong();
+        byte[] text = new byte[record.remaining()];
+        record.get(text);
+        Message existing = message_id < nextId ? byId[message_id] : null;
+        if (existing != null) {
+            remove(existing);
+        }
+        if (type != DELETE) {
+            add(new Message(message_id, posted_by, new String(text, StandardCharsets.UTF_8), time_posted_epoch));
+        }
+        dirty = true;
+    }
+
+    /**
+     * Append an insert to the write-ahead log, if there is one. Must hold the write lock, so the log has the same
+     * order as the changes.
+     *
+     * @return the record's sequence number, or 0 if there is no log.
+     */
+    private long logInsert(Message message) {
+        return log == null ? 0 : log.append(encode(INSERT, message));
+    }
+
+    /**
+     * Every record holds the whole message after the change (or before it, for a delete), so replaying it is the same
+     * whether or not the change was already applied.
+     */
+    private static byte[] encode(byte type, Message message) {
+        byte[] text = type == DELETE ? new byte[0] : message.getMessage_text().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(17 + text.length).put(type).putInt(message.getMessage_id())
+                .putInt(message.getPosted_by()).putLong(message.getTime_posted_epoch()).put(text).array();
+    }
+
+    /**
+     * Wait for the change with the given sequence number to be forced to disk, if changes are logged.
+     */
+    private void awaitDurable(long seq) {
+        if (log != null && seq > 0) {
+            log.awaitDurable(seq);
+        }
+    }
+
+    private void snapshotIfDirty(Path file) {
+        if (!dirty) {
+            return;
+        }
+        try {
+            snapshot(file);
+        } catch (UncheckedIOException e) {
+            LOGGER.error("Writing the message snapshot failed", e);
+        }
+    }
+
+    @Override
+    public ArrayList<Message> getAllMessages() {
+        reloadIfPending();
+        ArrayList<Message> arr = new ArrayList<Message>();
+        streamAllMessages(arr::add);
+        return arr;
+    }
+
+    /**
+     * The consumer is called after the lock is released, on a copy of the id index, so a slow consumer (e.g. a
+     * client reading the response) does not hold up writers.
+     */
+    @Override
+    public void streamAllMessages(Consumer<Message> consumer) {
+        reloadIfPending();
+        Message[] messages;
+        lock.readLock().lock();
+        try {
+            messages = Arrays.copyOf(byId, nextId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (Message message : messages) {
+            if (message != null) {
+                consumer.accept(message);
+            }
+        }
+    }
+
+    @Override
+    public ArrayList<Message> getMessagesAfter(int after, int limit) {
+        reloadIfPending();
+        ArrayList<Message> arr = new ArrayList<Message>();
+        lock.readLock().lock();
+        try {
+            for (int id = Math.max(after + 1, 1); id < nextId && arr.size() < limit; id++) {
+                if (byId[id] != null) {
+                    arr.add(byId[id]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return arr;
+    }
+
+    @Override
+    public Message getMessageById(int message_id) {
+        reloadIfPending();
+        lock.readLock().lock();
+        try {
+            return message_id > 0 && message_id < nextId ? byId[message_id] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ArrayList<Message> getAllMessagesPostedBy(int account_id) {
+        reloadIfPending();
+        ArrayList<Message> arr = new ArrayList<Message>();
+        streamAllMessagesPostedBy(account_id, arr::add);
+        return arr;
+    }
+
+    @Override
+    public ArrayList<Message> getMessagesPostedByBefore(int account_id, long before_time, int before_id, int limit) {
+        reloadIfPending();
+        ArrayList<Message> arr = new ArrayList<Message>();
+        lock.readLock().lock();
+        try {
+            NavigableSet<Message> timeline = timelines.get(account_id);
+            if (timeline == null) {
+                return arr;
+            }
+            Message cursor = new Message(before_id, account_id, "", before_time);
+            for (Message message : timeline.tailSet(cursor, false)) {
+                if (arr.size() == limit) {
+                    break;
+                }
+                arr.add(byId[message.getMessage_id()]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return arr;
+    }
+
+    /**
+     * Messages are passed to the consumer oldest first, after the lock is released.
+     */
+    @Override
+    public void streamAllMessagesPostedBy(int account_id, Consumer<Message> consumer) {
+        reloadIfPending();
+        List<Message> messages = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            NavigableSet<Message> timeline = timelines.get(account_id);
+            if (timeline != null) {
+                for (Message message : timeline.descendingSet()) {
+                    messages.add(byId[message.getMessage_id()]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        messages.forEach(consumer);
+    }
+
+    /**
+     * Messages are passed to the consumer after the lock is released.
+     */
+    @Override
+    public void streamMessagesBetween(long since, long until, Consumer<Message> consumer) {
+        reloadIfPending();
+        List<Message> messages = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (since <= until) {
+                for (Message message : byTime.subSet(rangeStart(since), true, rangeEnd(until), true)) {
+                    messages.add(byId[message.getMessage_id()]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        messages.forEach(consumer);
+    }
+
+    /**
+     * Messages are passed to the consumer after the lock is released.
+     */
+    @Override
+    public void streamMessagesPostedByBetween(int account_id, long since, long until, Consumer<Message> consumer) {
+        reloadIfPending();
+        List<Message> messages = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            NavigableSet<Message> timeline = timelines.get(account_id);
+            if (timeline != null && since <= until) {
+                for (Message message : timeline.descendingSet().subSet(rangeStart(since), true, rangeEnd(until), true)) {
+                    messages.add(byId[message.getMessage_id()]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        messages.forEach(consumer);
+    }
+
+    /**
+     * @return a key that sorts oldest first before every message posted at or after the given time.
+     */
+    private static Message rangeStart(long since) {
+        return new Message(Integer.MIN_VALUE, 0, "", since);
+    }
+
+    /**
+     * @return a key that sorts oldest first after every message posted at or before the given time.
+     */
+    private static Message rangeEnd(long until) {
+        return new Message(Integer.MAX_VALUE, 0, "", until);
+    }
+
+    @Override
+    public Message insertMessage(Message message) {
+        reloadIfPending();
+        if (accountDAO.getAccount(message.getPosted_by()) == null) {
+            return null;
+        }
+        return insertVerifiedMessage(message);
+    }
+
+    @Override
+    public Message insertVerifiedMessage(Message message) {
+        reloadIfPending();
+        Message inserted;
+        long seq;
+        lock.writeLock().lock();
+        try {
+            inserted = new Message(nextId, message.getPosted_by(), message.getMessage_text(),
+                    message.getTime_posted_epoch());
+            add(inserted);
+            seq = logInsert(inserted);
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+        return inserted;
+    }
+
+    @Override
+    public ArrayList<Message> insertMessages(List<Message> messages) {
+        reloadIfPending();
+        ArrayList<Message> arr = new ArrayList<Message>();
+        long seq = 0;
+        lock.writeLock().lock();
+        try {
+            for (Message message : messages) {
+                Message inserted = new Message(nextId, message.getPosted_by(), message.getMessage_text(),
+                        message.getTime_posted_epoch());
+                add(inserted);
+                seq = logInsert(inserted);
+                arr.add(inserted);
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+        return arr;
+    }
+
+    @Override
+    public Message updateMessageById(int message_id, String message_text) {
+        reloadIfPending();
+        Message updated;
+        long seq;
+        lock.writeLock().lock();
+        try {
+            Message existing = message_id > 0 && message_id < nextId ? byId[message_id] : null;
+            if (existing == null) {
+                return null;
+            }
+            updated = new Message(message_id, existing.getPosted_by(), message_text,
+                    existing.getTime_posted_epoch());
+            byId[message_id] = updated;
+            seq = log == null ? 0 : log.append(encode(UPDATE, updated));
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+        return updated;
+    }
+
+    @Override
+    public Message deleteMessageById(int message_id) {
+        reloadIfPending();
+        Message existing;
+        long seq;
+        lock.writeLock().lock();
+        try {
+            existing = message_id > 0 && message_id < nextId ? byId[message_id] : null;
+            if (existing == null) {
+                return null;
+            }
+            remove(existing);
+            seq = log == null ? 0 : log.append(encode(DELETE, existing));
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+        return existing;
+    }
+
+    /**
+     * @return the number of messages in the store.
+     */
+    public int size() {
+        reloadIfPending();
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reload from the store set by a database reset, if any. Cheap when there is none: one volatile read.
+     */
+    private void reloadIfPending() {
+        MessageStore source = pendingReload;
+        if (source != null) {
+            synchronized (this) {
+                if (pendingReload == source) {
+                    loadFrom(source);
+                    pendingReload = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Index a message under its message_id, its account and its time, moving nextId past it. Must hold the write
+     * lock.
+     */
+    private void add(Message message) {
+        int message_id = message.getMessage_id();
+        if (message_id >= byId.length) {
+            byId = Arrays.copyOf(byId, Math.max(byId.length * 2, message_id + 1));
+        }
+        byId[message_id] = message;
+        timelines.computeIfAbsent(message.getPosted_by(), k -> new TreeSet<>(TIMELINE_ORDER)).add(message);
+        byTime.add(message);
+        nextId = Math.max(nextId, message_id + 1);
+        count++;
+    }
+
+    /**
+     * Remove a message from every index. Must hold the write lock.
+     */
+    private void remove(Message message) {
+        byId[message.getMessage_id()] = null;
+        timelines.get(message.getPosted_by()).remove(message);
+        byTime.remove(message);
+        count--;
+    }
+
+    /**
+     * Remove every message. Must hold the write lock.
+     */
+    private void clear() {
+        byId = new Message[1024];
+        timelines.clear();
+        byTime = new TreeSet<>(TIME_ORDER);
+        nextId = 1;
+        count = 0;
+    }
+}
@@ -1,16 +1,45 @@
 package DAO;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import Model.Message;
 import Util.ConnectionUtil;
+import Util.Metrics;
+
+public class MessageDAO implements MessageStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageDAO.class);
+    private static final Metrics.Timer GET_ALL_MESSAGES_TIMER = Metrics.queryTimer("MessageDAO.getAllMessages");
+    private static final Metrics.Timer STREAM_ALL_MESSAGES_TIMER = Metrics.queryTimer("MessageDAO.streamAllMessages");
+    private static final Metrics.Timer GET_MESSAGES_AFTER_TIMER = Metrics.queryTimer("MessageDAO.getMessagesAfter");
+    private static final Metrics.Timer GET_MESSAGE_BY_ID_TIMER = Metrics.queryTimer("MessageDAO.getMessageById");
+    private static final Metrics.Timer GET_ALL_MESSAGES_POSTED_BY_TIMER = Metrics.queryTimer("MessageDAO.getAllMessagesPostedBy");
+    private static final Metrics.Timer GET_MESSAGES_POSTED_BY_BEFORE_TIMER = Metrics.queryTimer("MessageDAO.getMessagesPostedByBefore");
+    private static final Metrics.Timer STREAM_ALL_MESSAGES_POSTED_BY_TIMER = Metrics.queryTimer("MessageDAO.streamAllMessagesPostedBy");
+    private static final Metrics.Timer STREAM_MESSAGES_BETWEEN_TIMER = Metrics.queryTimer("MessageDAO.streamMessagesBetween");
+    private static final Metrics.Timer STREAM_MESSAGES_POSTED_BY_BETWEEN_TIMER = Metrics.queryTimer("MessageDAO.streamMessagesPostedByBetween");
+    private static final Metrics.Timer INSERT_MESSAGE_TIMER = Metrics.queryTimer("MessageDAO.insertMessage");
+    private static final Metrics.Timer INSERT_MESSAGES_TIMER = Metrics.queryTimer("MessageDAO.insertMessages");
+    private static final Metrics.Timer UPDATE_MESSAGE_BY_ID_TIMER = Metrics.queryTimer("MessageDAO.updateMessageById");
+    private static final Metrics.Timer DELETE_MESSAGE_BY_ID_TIMER = Metrics.queryTimer("MessageDAO.deleteMessageById");
 
-public class MessageDAO {
+    /**
+     * The timeline page query of getMessagesPostedByBefore, with parameters posted_by, before_time (twice), before_id
+     * and limit. Public so its query plan can be checked against the index it is meant to seek on.
+     */
+    public static final String MESSAGES_POSTED_BY_BEFORE_SQL = "SELECT * FROM message WHERE posted_by = ? "
+            + "AND time_posted_epoch <= ? AND (time_posted_epoch < ? OR message_id < ?) "
+            + "ORDER BY time_posted_epoch DESC, message_id DESC LIMIT ?";
 
     /**
      * Retrieve all records in the message table.
@@ -19,18 +48,73 @@ public class MessageDAO {
      */
     public ArrayList<Message> getAllMessages() {
         ArrayList<Message> arr = new ArrayList<Message>();
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            Statement statement = connection.createStatement();
-
-            ResultSet rs = statement.executeQuery("SELECT * FROM message");
+        try (Metrics.Sample sample = GET_ALL_MESSAGES_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT * FROM message")) {
             while (rs.next()) {
                 Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
                         rs.getString("message_text"), rs.getLong("time_posted_epoch"));
                 arr.add(message);
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            GET_ALL_MESSAGES_TIMER.recordError();
+            LOGGER.error("getAllMessages failed", e);
+        }
+        return arr;
+    }
+
+    /**
+     * Pass every record in the message table to the given consumer, one row at a time as it is read from the
+     * ResultSet, so no list of the whole table is ever built.
+     *
+     * @param consumer receives a Message object for each retrieved record.
+     * @throws IllegalStateException if the query fails, possibly after some messages were already passed to the
+     * consumer, so a caller never mistakes a cut-off result for a complete one.
+     */
+    public void streamAllMessages(Consumer<Message> consumer) {
+        try (Metrics.Sample sample = STREAM_ALL_MESSAGES_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT * FROM message")) {
+            while (rs.next()) {
+                consumer.accept(new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                        rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+            }
+        } catch (SQLException e) {
+            STREAM_ALL_MESSAGES_TIMER.recordError();
+            throw new IllegalStateException("streamAllMessages failed", e);
+        }
+    }
+
+    /**
+     * Retrieve up to limit records in the message table with a message_id greater than the given cursor,
+     * in ascending message_id order. Seeks on the primary key, so the cost of a page does not grow with its offset.
+     *
+     * @param after the message_id of the last message on the previous page (0 for the first page).
+     * @param limit the maximum number of records to retrieve.
+     * @return ArrayList<Message> a list of Message objects, corresponding to the retrieved records.
+     */
+    public ArrayList<Message> getMessagesAfter(int after, int limit) {
+        ArrayList<Message> arr = new ArrayList<Message>();
+        String sql = "SELECT * FROM message WHERE message_id > ? ORDER BY message_id LIMIT ?";
+        try (Metrics.Sample sample = GET_MESSAGES_AFTER_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setInt(1, after);
+            preparedStatement.setInt(2, limit);
+
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    arr.add(message);
+                }
+            }
+        } catch (SQLException e) {
+            GET_MESSAGES_AFTER_TIMER.recordError();
+            LOGGER.error("getMessagesAfter failed", e);
         }
         return arr;
     }
@@ -41,21 +125,23 @@ public class MessageDAO {
      * @return Message the retrieved record as a Message object.
      */
     public Message getMessageById(int message_id) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM message WHERE message_id = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        String sql = "SELECT * FROM message WHERE message_id = ?";
+        try (Metrics.Sample sample = GET_MESSAGE_BY_ID_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
 
             preparedStatement.setInt(1, message_id);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            while (rs.next()) {
-                Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
-                        rs.getString("message_text"), rs.getLong("time_posted_epoch"));
-                return message;
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    return message;
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            GET_MESSAGE_BY_ID_TIMER.recordError();
+            LOGGER.error("getMessageById failed", e);
         }
         return null;
     }
@@ -67,96 +153,306 @@ public class MessageDAO {
      */
     public ArrayList<Message> getAllMessagesPostedBy(int account_id) {
         ArrayList<Message> arr = new ArrayList<Message>();
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "SELECT * FROM message WHERE posted_by = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        String sql = "SELECT * FROM message WHERE posted_by = ?";
+        try (Metrics.Sample sample = GET_ALL_MESSAGES_POSTED_BY_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
 
             preparedStatement.setInt(1, account_id);
 
-            ResultSet rs = preparedStatement.executeQuery();
-            while (rs.next()) {
-                Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
-                        rs.getString("message_text"), rs.getLong("time_posted_epoch"));
-                arr.add(message);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    arr.add(message);
+                }
+            }
+        } catch (SQLException e) {
+            GET_ALL_MESSAGES_POSTED_BY_TIMER.recordError();
+            LOGGER.error("getAllMessagesPostedBy failed", e);
+        }
+        return arr;
+    }
+
+    /**
+     * Retrieve up to limit records in the message table with posted_by equal to the given account_id that come after
+     * the given cursor in newest-first order (time_posted_epoch descending, then message_id descending).
+     * Seeks on the (posted_by, time_posted_epoch, message_id) index, so the cost of a page does not grow with its
+     * depth in the timeline.
+     *
+     * @param account_id the id of the account that posted the messages.
+     * @param before_time the time_posted_epoch of the last message on the previous page.
+     * @param before_id the message_id of the last message on the previous page.
+     * @param limit the maximum number of records to retrieve.
+     * @return ArrayList<Message> a list of Message objects, corresponding to the retrieved records.
+     */
+    public ArrayList<Message> getMessagesPostedByBefore(int account_id, long before_time, int before_id, int limit) {
+        ArrayList<Message> arr = new ArrayList<Message>();
+        try (Metrics.Sample sample = GET_MESSAGES_POSTED_BY_BEFORE_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(MESSAGES_POSTED_BY_BEFORE_SQL)) {
+
+            preparedStatement.setInt(1, account_id);
+            preparedStatement.setLong(2, before_time);
+            preparedStatement.setLong(3, before_time);
+            preparedStatement.setInt(4, before_id);
+            preparedStatement.setInt(5, limit);
+
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    Message message = new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                    arr.add(message);
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            GET_MESSAGES_POSTED_BY_BEFORE_TIMER.recordError();
+            LOGGER.error("getMessagesPostedByBefore failed", e);
         }
         return arr;
     }
 
+    /**
+     * Pass every record in the message table with posted_by equal to the given account_id to the given consumer,
+     * one row at a time as it is read from the ResultSet.
+     *
+     * @param account_id the id of the account that posted the messages.
+     * @param consumer receives a Message object for each retrieved record.
+     * @throws IllegalStateException if the query fails, possibly after some messages were already passed to the
+     * consumer, so a caller never mistakes a cut-off result for a complete one.
+     */
+    public void streamAllMessagesPostedBy(int account_id, Consumer<Message> consumer) {
+        String sql = "SELECT * FROM message WHERE posted_by = ?";
+        try (Metrics.Sample sample = STREAM_ALL_MESSAGES_POSTED_BY_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setInt(1, account_id);
+
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                }
+            }
+        } catch (SQLException e) {
+            STREAM_ALL_MESSAGES_POSTED_BY_TIMER.recordError();
+            throw new IllegalStateException("streamAllMessagesPostedBy failed", e);
+        }
+    }
+
+    /**
+     * Pass every record in the message table with a time_posted_epoch from since to until to the given consumer,
+     * oldest first, one row at a time as it is read from the ResultSet. Scans the (time_posted_epoch, message_id)
+     * index from since, so only the records in the range are read and they need no sorting.
+     *
+     * @param since the earliest time_posted_epoch to include.
+     * @param until the latest time_posted_epoch to include.
+     * @param consumer receives a Message object for each retrieved record.
+     * @throws IllegalStateException if the query fails, possibly after some messages were already passed to the
+     * consumer, so a caller never mistakes a cut-off result for a complete one.
+     */
+    public void streamMessagesBetween(long since, long until, Consumer<Message> consumer) {
+        String sql = "SELECT * FROM message WHERE time_posted_epoch >= ? AND time_posted_epoch <= ? "
+                + "ORDER BY time_posted_epoch, message_id";
+        try (Metrics.Sample sample = STREAM_MESSAGES_BETWEEN_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setLong(1, since);
+            preparedStatement.setLong(2, until);
+
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                }
+            }
+        } catch (SQLException e) {
+            STREAM_MESSAGES_BETWEEN_TIMER.recordError();
+            throw new IllegalStateException("streamMessagesBetween failed", e);
+        }
+    }
+
+    /**
+     * Pass every record in the message table with posted_by equal to the given account_id and a time_posted_epoch
+     * from since to until to the given consumer, oldest first, one row at a time as it is read from the ResultSet.
+     * Seeks on the (posted_by, time_posted_epoch, message_id) index, which is named because H2 would otherwise pick
+     * the posted_by foreign key index and filter every record of the account; only the account's records in the
+     * range are read.
+     *
+     * @param account_id the id of the account that posted the messages.
+     * @param since the earliest time_posted_epoch to include.
+     * @param until the latest time_posted_epoch to include.
+     * @param consumer receives a Message object for each retrieved record.
+     * @throws IllegalStateException if the query fails, possibly after some messages were already passed to the
+     * consumer, so a caller never mistakes a cut-off result for a complete one.
+     */
+    public void streamMessagesPostedByBetween(int account_id, long since, long until, Consumer<Message> consumer) {
+        String sql = "SELECT * FROM message USE INDEX (message_posted_by_time_idx) "
+                + "WHERE posted_by = ? AND time_posted_epoch >= ? AND time_posted_epoch <= ? "
+                + "ORDER BY time_posted_epoch, message_id";
+        try (Metrics.Sample sample = STREAM_MESSAGES_POSTED_BY_BETWEEN_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setInt(1, account_id);
+            preparedStatement.setLong(2, since);
+            preparedStatement.setLong(3, until);
+
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch")));
+                }
+            }
+        } catch (SQLException e) {
+            STREAM_MESSAGES_POSTED_BY_BETWEEN_TIMER.recordError();
+            throw new IllegalStateException("streamMessagesPostedByBetween failed", e);
+        }
+    }
+
     /**
      * Add a message record into the database which matches the fields contained in the Message object.
+     * The foreign key on posted_by guarantees the message is connected to an existing account.
      *
      * @param message a Message object that does not contain an message_id.
-     * @return Message the message object that was successfully inserted into the database.
+     * @return Message the message object that was successfully inserted into the database, or null if posted_by does
+     * not refer to an existing account.
      */
     public Message insertMessage(Message message) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+        try (Metrics.Sample sample = INSERT_MESSAGE_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             preparedStatement.setInt(1, message.getPosted_by());
             preparedStatement.setString(2, message.getMessage_text());
             preparedStatement.setLong(3, message.getTime_posted_epoch());
 
             preparedStatement.executeUpdate();
-            ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys();
-            if (pkeyResultSet.next()) {
-                int generated_message_id = (int) pkeyResultSet.getLong(1);
-                return new Message(generated_message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+            try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                if (pkeyResultSet.next()) {
+                    int generated_message_id = (int) pkeyResultSet.getLong(1);
+                    return new Message(generated_message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+                }
             }
-        } catch(SQLException e) {
-            System.out.println(e.getMessage());
+        } catch (SQLIntegrityConstraintViolationException e) {
+            return null;
+        } catch (SQLException e) {
+            INSERT_MESSAGE_TIMER.recordError();
+            LOGGER.error("insertMessage failed", e);
         }
         return null;
     }
 
+    /**
+     * Same as insertMessage: the foreign key is checked by the insert itself, so there is no lookup to skip.
+     */
+    public Message insertVerifiedMessage(Message message) {
+        return insertMessage(message);
+    }
+
+    /**
+     * Add several message records into the database with a single JDBC batch inside one transaction.
+     * Every message must already be validated, including that its posted_by refers to an existing account.
+     *
+     * @param messages Message objects that do not contain a message_id.
+     * @return ArrayList<Message> the inserted messages including their generated message_ids, in the same order, or
+     * null if the batch failed and was rolled back.
+     */
+    public ArrayList<Message> insertMessages(List<Message> messages) {
+        ArrayList<Message> arr = new ArrayList<Message>();
+        if (messages.isEmpty()) {
+            return arr;
+        }
+        String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+        try (Metrics.Sample sample = INSERT_MESSAGES_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            connection.setAutoCommit(false);
+            try {
+                for (Message message : messages) {
+                    preparedStatement.setInt(1, message.getPosted_by());
+                    preparedStatement.setString(2, message.getMessage_text());
+                    preparedStatement.setLong(3, message.getTime_posted_epoch());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+                try (ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys()) {
+                    for (Message message : messages) {
+                        if (!pkeyResultSet.next()) {
+                            throw new SQLException("Missing generated key for batched message");
+                        }
+                        int generated_message_id = (int) pkeyResultSet.getLong(1);
+                        arr.add(new Message(generated_message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch()));
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            INSERT_MESSAGES_TIMER.recordError();
+            LOGGER.error("insertMessages failed", e);
+            return null;
+        }
+        return arr;
+    }
+
     /**
      * Update the message_text of one record in the message table by it's primary key (message_id).
+     * The updated record is read from H2's FINAL TABLE of the update, so it costs a single statement and there is no
+     * separate read that could see another writer's row.
      *
-     * @return Message the updated record as a Message object.
+     * @return Message the updated record as a Message object, or null if there is no record with the given message_id.
      */
     public Message updateMessageById(int message_id, String message_text) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "UPDATE message SET message_text = ? WHERE message_id = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        String sql = "SELECT * FROM FINAL TABLE (UPDATE message SET message_text = ? WHERE message_id = ?)";
+        try (Metrics.Sample sample = UPDATE_MESSAGE_BY_ID_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
 
             preparedStatement.setString(1, message_text);
             preparedStatement.setInt(2, message_id);
 
-            int rowsAffected = preparedStatement.executeUpdate();
-            if (rowsAffected != 0) {
-                Message updatedMessage = getMessageById(message_id);
-                return updatedMessage;
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                if (rs.next()) {
+                    return new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            UPDATE_MESSAGE_BY_ID_TIMER.recordError();
+            LOGGER.error("updateMessageById failed", e);
         }
         return null;
     }
 
     /**
      * Delete one record in the message table by it's primary key (message_id).
+     * The deleted record is read from H2's OLD TABLE of the delete, so it costs a single statement.
      *
-     * @return Message the deleted record as a Message object.
+     * @return Message the deleted record as a Message object, or null if there is no record with the given message_id.
      */
     public Message deleteMessageById(int message_id) {
-        Message message = getMessageById(message_id);
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String sql = "DELETE FROM message WHERE message_id = ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        String sql = "SELECT * FROM OLD TABLE (DELETE FROM message WHERE message_id = ?)";
+        try (Metrics.Sample sample = DELETE_MESSAGE_BY_ID_TIMER.start();
+                Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
 
             preparedStatement.setInt(1, message_id);
 
-            preparedStatement.executeUpdate();
-            return message;
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                if (rs.next()) {
+                    return new Message(rs.getInt("message_id"), rs.getInt("posted_by"),
+                            rs.getString("message_text"), rs.getLong("time_posted_epoch"));
+                }
+            }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            DELETE_MESSAGE_BY_ID_TIMER.recordError();
+            LOGGER.error("deleteMessageById failed", e);
         }
         return null;
     }
@@ -0,0 +1,135 @@
+package DAO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import Model.Message;
+
+/**
+ * Storage engine for messages. MessageDAO keeps them in the H2 message table; InMemoryMessageStore keeps them in
+ * process memory. The messages.store system property picks the one returned by fromConfig(): "h2" (the default) or
+ * "memory".
+ */
+public interface MessageStore {
+
+    /**
+     * @return a new MessageDAO, or the shared InMemoryMessageStore when messages.store is "memory".
+     */
+    static MessageStore fromConfig() {
+        String store = System.getProperty("messages.store", "h2");
+        switch (store) {
+            case "h2":
+                return new MessageDAO();
+            case "memory":
+                return InMemoryMessageStore.shared();
+            default:
+                throw new IllegalArgumentException("Unknown messages.store: " + store);
+        }
+    }
+
+    /**
+     * Open the configured store before the API serves requests. For the in-memory store this loads its snapshot and
+     * replays its write-ahead log (messages.walFile), so recovery happens at startup instead of on the first request.
+     */
+    static void recover() {
+        fromConfig();
+    }
+
+    /**
+     * @return ArrayList<Message> every message.
+     */
+    ArrayList<Message> getAllMessages();
+
+    /**
+     * @param consumer receives every message, one at a time, without a list of all of them being built.
+     */
+    void streamAllMessages(Consumer<Message> consumer);
+
+    /**
+     * @param after the message_id of the last message on the previous page (0 for the first page).
+     * @param limit the maximum number of messages to retrieve.
+     * @return ArrayList<Message> up to limit messages with a message_id greater than after, in ascending message_id
+     * order.
+     */
+    ArrayList<Message> getMessagesAfter(int after, int limit);
+
+    /**
+     * @return Message the message with the given message_id, or null if there is none.
+     */
+    Message getMessageById(int message_id);
+
+    /**
+     * @return ArrayList<Message> every message with posted_by equal to the given account_id.
+     */
+    ArrayList<Message> getAllMessagesPostedBy(int account_id);
+
+    /**
+     * @param account_id the id of the account that posted the messages.
+     * @param before_time the time_posted_epoch of the last message on the previous page.
+     * @param before_id the message_id of the last message on the previous page.
+     * @param limit the maximum number of messages to retrieve.
+     * @return ArrayList<Message> up to limit messages posted by the account that come after the given cursor in
+     * newest-first order (time_posted_epoch descending, then message_id descending).
+     */
+    ArrayList<Message> getMessagesPostedByBefore(int account_id, long before_time, int before_id, int limit);
+
+    /**
+     * @param account_id the id of the account that posted the messages.
+     * @param consumer receives every message with posted_by equal to the given account_id, one at a time.
+     */
+    void streamAllMessagesPostedBy(int account_id, Consumer<Message> consumer);
+
+    /**
+     * @param since the earliest time_posted_epoch to include.
+     * @param until the latest time_posted_epoch to include.
+     * @param consumer receives every message posted from since to until, one at a time, oldest first (time_posted_epoch
+     * ascending, then message_id ascending).
+     */
+    void streamMessagesBetween(long since, long until, Consumer<Message> consumer);
+
+    /**
+     * @param account_id the id of the account that posted the messages.
+     * @param since the earliest time_posted_epoch to include.
+     * @param until the latest time_posted_epoch to include.
+     * @param consumer receives every message with posted_by equal to the given account_id posted from since to until,
+     * one at a time, oldest first (time_posted_epoch ascending, then message_id ascending).
+     */
+    void streamMessagesPostedByBetween(int account_id, long since, long until, Consumer<Message> consumer);
+
+    /**
+     * @param message a Message object that does not contain a message_id.
+     * @return Message the inserted message including its generated message_id, or null if posted_by does not refer
+     * to an existing account.
+     */
+    Message insertMessage(Message message);
+
+    /**
+     * Insert a message whose posted_by is already known to refer to an existing account (e.g. it was taken from a
+     * verified session token), so the store does not have to look the account up again.
+     *
+     * @param message a Message object that does not contain a message_id.
+     * @return Message the inserted message including its generated message_id, or null if it could not be inserted.
+     */
+    Message insertVerifiedMessage(Message message);
+
+    /**
+     * Insert several messages at once, all or none. Every message must already be validated, including that its
+     * posted_by refers to an existing account.
+     *
+     * @param messages Message objects that do not contain a message_id.
+     * @return ArrayList<Message> the inserted messages including their generated message_ids, in the same order, or
+     * null if none were inserted.
+     */
+    ArrayList<Message> insertMessages(List<Message> messages);
+
+    /**
+     * @return Message the updated message, or null if there is no message with the given message_id.
+     */
+    Message updateMessageById(int message_id, String message_text);
+
+    /**
+     * @return Message the deleted message, or null if there is no message with the given message_id.
+     */
+    Message deleteMessageById(int message_id);
+}
@@ -1,4 +1,7 @@
 import Controller.SocialMediaController;
+import DAO.MessageStore;
+import Service.MessageService;
+import Util.ConnectionUtil;
 import io.javalin.Javalin;
 
 /**
@@ -7,6 +10,9 @@ import io.javalin.Javalin;
  */
 public class Main {
     public static void main(String[] args) {
+        ConnectionUtil.migrate();
+        MessageStore.recover();
+        MessageService.buildSearchIndex();
         SocialMediaController controller = new SocialMediaController();
         Javalin app = controller.startAPI();
         app.start(8080);
@@ -0,0 +1,78 @@
+package Model;
+
+/**
+ * This is a class that models the outcome of importing one message through the bulk import endpoint.
+ */
+public class ImportResult {
+    /**
+     * The position of the message in the imported array or stream, starting at 0.
+     */
+    private int index;
+    /**
+     * The HTTP-style status of this message: 200 if it was inserted, 400 if it was rejected, 403 if it names another
+     * account than the session token's.
+     */
+    private int status;
+    /**
+     * The inserted message including its message_id, or null if it was rejected.
+     */
+    private Message message;
+    /**
+     * Why the message was rejected, or null if it was inserted.
+     */
+    private String error;
+
+    /**
+     * Constructor for the result of an inserted message.
+     * @param index
+     * @param message
+     */
+    public ImportResult(int index, Message message) {
+        this.index = index;
+        this.status = 200;
+        this.message = message;
+    }
+    /**
+     * Constructor for the result of a rejected message.
+     * @param index
+     * @param error
+     */
+    public ImportResult(int index, String error) {
+        this(index, 400, error);
+    }
+    /**
+     * Constructor for the result of a message rejected with the given status.
+     * @param index
+     * @param status
+     * @param error
+     */
+    public ImportResult(int index, int status, String error) {
+        this.index = index;
+        this.status = status;
+        this.error = error;
+    }
+    /**
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+    /**
+     * @return status
+     */
+    public int getStatus() {
+        return status;
+    }
+    /**
+     * @return message
+     */
+    public Message getMessage() {
+        return message;
+    }
+    /**
+     * @return error
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,39 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of messages retrieved with keyset pagination.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, in the order they were retrieved.
+     */
+    private List<Message> messages;
+    /**
+     * The cursor to pass to retrieve the following page, or null if this is the last page.
+     */
+    private String next_cursor;
+
+    /**
+     * Constructor for a page of messages.
+     * @param messages
+     * @param next_cursor
+     */
+    public MessagePage(List<Message> messages, String next_cursor) {
+        this.messages = messages;
+        this.next_cursor = next_cursor;
+    }
+    /**
+     * @return messages
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+    /**
+     * @return next_cursor
+     */
+    public String getNext_cursor() {
+        return next_cursor;
+    }
+}
@@ -1,19 +1,32 @@
 package Service;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import Model.Account;
 import Model.Message;
+import Model.MessagePage;
 import DAO.AccountDAO;
+import Util.PasswordHasher;
 
 public class AccountService {
+    /**
+     * Password hasher shared by every AccountService created without one. Its work factor is the
+     * accounts.passwordIterations system property (PBKDF2 iterations), and it remembers up to
+     * accounts.verifiedCacheSize recently verified hashes (0 to always hash).
+     */
+    private static final PasswordHasher sharedPasswordHasher = new PasswordHasher(
+            Integer.getInteger("accounts.passwordIterations", 600000),
+            Integer.getInteger("accounts.verifiedCacheSize", 10000));
+
     AccountDAO accountDAO;
+    PasswordHasher passwordHasher;
 
     /**
      * No-args constructor for an accountService to instantiate a plain accountDAO.
      */
     public AccountService() {
-        accountDAO = new AccountDAO();
+        this(new AccountDAO());
     }
 
     /**
@@ -22,30 +35,58 @@ public class AccountService {
      * @param accountDAO
      */
     public AccountService(AccountDAO accountDAO) {
+        this(accountDAO, sharedPasswordHasher);
+    }
+
+    /**
+     * Constructor for an accountService when an accountDAO and a passwordHasher are provided.
+     *
+     * @param accountDAO
+     * @param passwordHasher
+     */
+    public AccountService(AccountDAO accountDAO, PasswordHasher passwordHasher) {
         this.accountDAO = accountDAO;
+        this.passwordHasher = passwordHasher;
     }
 
     /**
      * Use the AccountDAO to add a new account to the database, given an Account object with a unique non-empty username and a password with 4 or more characters.
+     * Only a salted hash of the password is stored. Hashing is deliberately slow (see PasswordHasher).
      *
      * @param account an object representing a new account.
-     * @return Account the newly added account if the insert operation was successful, including the account_id.
+     * @return Account the newly added account if the insert operation was successful, including the account_id and
+     * the password as it was given.
      */
     public Account addAccount(Account account) {
         if (account.getPassword().length() < 4 || account.getUsername().length() == 0 || accountDAO.getAccount(account.getUsername()) != null) {
             return null;
         }
-        return accountDAO.insertAccount(account);
+        Account inserted = accountDAO.insertAccount(new Account(account.getUsername(), passwordHasher.hash(account.getPassword())));
+        return inserted == null ? null : new Account(inserted.getAccount_id(), inserted.getUsername(), account.getPassword());
     }
 
     /**
-     * Use the AccountDAO to verify the existence of an account, given an Account object with a username and password pair that exists in the database.
+     * Verify an account's credentials: the account is looked up by username alone with the AccountDAO, and the
+     * password is checked against its stored hash in-process. An unknown username costs as much as a wrong password.
+     * A stored hash with an outdated work factor (or a plaintext password from before hashing) is replaced by a new
+     * hash once the password is verified.
      *
      * @param account an object representing an account to verify.
-     * @return Account the verified account, including the account_id.
+     * @return Account the verified account, including the account_id and the password as it was given, or null if
+     * the username or password is wrong.
      */
     public Account verifyAccount(Account account) {
-        return accountDAO.getAccount(account.getUsername(), account.getPassword());
+        if (account.getUsername() == null || account.getPassword() == null) {
+            return null;
+        }
+        Account stored = accountDAO.getAccount(account.getUsername());
+        if (!passwordHasher.verify(account.getPassword(), stored == null ? null : stored.getPassword())) {
+            return null;
+        }
+        if (passwordHasher.needsRehash(stored.getPassword())) {
+            accountDAO.updatePassword(stored.getAccount_id(), passwordHasher.hash(account.getPassword()));
+        }
+        return new Account(stored.getAccount_id(), stored.getUsername(), account.getPassword());
     }
 
     /**
@@ -68,4 +109,43 @@ public class AccountService {
         MessageService messageService = new MessageService();
         return messageService.getAllMessagesPostedBy(account_id);
     }
+
+    /**
+     * Use MessageService to get one page of the specified account's messages, newest first.
+     *
+     * @param account_id the id of the account to lookup.
+     * @param before the cursor returned with the previous page, or null for the newest page.
+     * @param limit the maximum number of messages on the page.
+     * @return MessagePage the retrieved messages and the cursor for the following page.
+     * @throws IllegalArgumentException if before is not a valid cursor.
+     */
+    public MessagePage getTimelinePage(int account_id, String before, int limit) {
+        MessageService messageService = new MessageService();
+        return messageService.getTimelinePage(account_id, before, limit);
+    }
+
+    /**
+     * Use MessageService to pass every message from the specified account to the given consumer without building a list.
+     *
+     * @param account_id the id of the account to lookup.
+     * @param consumer receives each message with posted_by equal to the specified account_id.
+     */
+    public void streamAllMessagesFromAccount(int account_id, Consumer<Message> consumer) {
+        MessageService messageService = new MessageService();
+        messageService.streamAllMessagesPostedBy(account_id, consumer);
+    }
+
+    /**
+     * Use MessageService to pass the messages the specified account posted in a time range to the given consumer,
+     * oldest first, without building a list.
+     *
+     * @param account_id the id of the account to lookup.
+     * @param since the earliest time_posted_epoch to include.
+     * @param until the latest time_posted_epoch to include.
+     * @param consumer receives each message with posted_by equal to the specified account_id posted in the range.
+     */
+    public void streamMessagesFromAccountBetween(int account_id, long since, long until, Consumer<Message> consumer) {
+        MessageService messageService = new MessageService();
+        messageService.streamMessagesPostedByBetween(account_id, since, until, consumer);
+    }
 }
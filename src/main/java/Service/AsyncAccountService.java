@@ -0,0 +1,67 @@
+package Service;
+
+import java.util.concurrent.CompletableFuture;
+
+import Model.Account;
+import Model.MessagePage;
+import Util.BoundedExecutor;
+
+/**
+ * Non-blocking counterpart of AccountService: every call runs the matching AccountService method on a bounded
+ * executor and returns a CompletableFuture, so the calling thread is never parked on JDBC. A future fails with a
+ * RejectedExecutionException when the executor's queue is full.
+ *
+ * Registration and login spend most of their time hashing a password, so they can run on an executor of their own:
+ * a burst of logins then queues (and is shed) there, and does not take the workers that serve the other calls.
+ */
+public class AsyncAccountService {
+    AccountService accountService;
+    BoundedExecutor executor;
+    BoundedExecutor passwordExecutor;
+
+    /**
+     * Constructor for an asyncAccountService that runs the given accountService on the given executor.
+     *
+     * @param accountService
+     * @param executor
+     */
+    public AsyncAccountService(AccountService accountService, BoundedExecutor executor) {
+        this(accountService, executor, executor);
+    }
+
+    /**
+     * Constructor for an asyncAccountService that runs registration and login on passwordExecutor, and every other
+     * call on executor.
+     *
+     * @param accountService
+     * @param executor
+     * @param passwordExecutor
+     */
+    public AsyncAccountService(AccountService accountService, BoundedExecutor executor, BoundedExecutor passwordExecutor) {
+        this.accountService = accountService;
+        this.executor = executor;
+        this.passwordExecutor = passwordExecutor;
+    }
+
+    /**
+     * @see AccountService#addAccount(Account)
+     */
+    public CompletableFuture<Account> addAccount(Account account) {
+        return passwordExecutor.supply(() -> accountService.addAccount(account));
+    }
+
+    /**
+     * @see AccountService#verifyAccount(Account)
+     */
+    public CompletableFuture<Account> verifyAccount(Account account) {
+        return passwordExecutor.supply(() -> accountService.verifyAccount(account));
+    }
+
+    /**
+     * @see AccountService#getTimelinePage(int, String, int)
+     * @return CompletableFuture<MessagePage> fails with an IllegalArgumentException if before is not a valid cursor.
+     */
+    public CompletableFuture<MessagePage> getTimelinePage(int account_id, String before, int limit) {
+        return executor.supply(() -> accountService.getTimelinePage(account_id, before, limit));
+    }
+}
@@ -0,0 +1,106 @@
+package Service;
+
+import java.util.concurrent.CompletableFuture;
+
+import Model.Message;
+import Model.MessagePage;
+import Util.BoundedExecutor;
+
+/**
+ * Non-blocking counterpart of MessageService: every call runs the matching MessageService method on a bounded
+ * executor and returns a CompletableFuture, so the calling thread is never parked on JDBC. A future fails with a
+ * RejectedExecutionException when the executor's queue is full.
+ */
+public class AsyncMessageService {
+    MessageService messageService;
+    BoundedExecutor executor;
+
+    /**
+     * Constructor for an asyncMessageService that runs the given messageService on the given executor.
+     *
+     * @param messageService
+     * @param executor
+     */
+    public AsyncMessageService(MessageService messageService, BoundedExecutor executor) {
+        this.messageService = messageService;
+        this.executor = executor;
+    }
+
+    /**
+     * @see MessageService#getMessagesPage(int, int)
+     */
+    public CompletableFuture<MessagePage> getMessagesPage(int after, int limit) {
+        return executor.supply(() -> messageService.getMessagesPage(after, limit));
+    }
+
+    /**
+     * @see MessageService#getTimelinePage(int, String, int)
+     * @return CompletableFuture<MessagePage> fails with an IllegalArgumentException if before is not a valid cursor.
+     */
+    public CompletableFuture<MessagePage> getTimelinePage(int account_id, String before, int limit) {
+        return executor.supply(() -> messageService.getTimelinePage(account_id, before, limit));
+    }
+
+    /**
+     * @see MessageService#searchMessages(String, int, int)
+     * @return CompletableFuture<MessagePage> fails with an IllegalArgumentException if the query has no words.
+     */
+    public CompletableFuture<MessagePage> searchMessages(String query, int offset, int limit) {
+        return executor.supply(() -> messageService.searchMessages(query, offset, limit));
+    }
+
+    /**
+     * @see MessageService#getMessageById(int)
+     */
+    public CompletableFuture<Message> getMessageById(int message_id) {
+        return executor.supply(() -> messageService.getMessageById(message_id));
+    }
+
+    /**
+     * Get a message's JSON encoding like MessageService.getMessageJsonById. When the encoding is already cached, the
+     * future is completed right away without going through the executor.
+     *
+     * @see MessageService#getMessageJsonById(int)
+     */
+    public CompletableFuture<byte[]> getMessageJsonById(int message_id) {
+        byte[] cached = messageService.getCachedMessageJson(message_id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return executor.supply(() -> messageService.getMessageJsonById(message_id));
+    }
+
+    /**
+     * Add a new message like MessageService.addMessage. When the messageService has a batch writer, the message is
+     * handed to it directly, since queueing it does not block.
+     *
+     * @see MessageService#addMessage(Message)
+     */
+    public CompletableFuture<Message> addMessage(Message message) {
+        return addMessage(message, false);
+    }
+
+    /**
+     * @see MessageService#addMessage(Message, boolean)
+     */
+    public CompletableFuture<Message> addMessage(Message message, boolean posterVerified) {
+        if (messageService.batchWriter != null) {
+            return messageService.addMessageAsync(message, posterVerified);
+        }
+        return executor.supply(() -> messageService.addMessage(message, posterVerified));
+    }
+
+    /**
+     * @see MessageService#updateMessageById(int, String)
+     */
+    public CompletableFuture<Message> updateMessageById(int message_id, String message_text) {
+        return executor.supply(() -> messageService.updateMessageById(message_id, message_text));
+    }
+
+    /**
+     * @see MessageService#deleteMessageById(int)
+     */
+    public CompletableFuture<Message> deleteMessageById(int message_id) {
+        return executor.supply(() -> messageService.deleteMessageById(message_id));
+    }
+}
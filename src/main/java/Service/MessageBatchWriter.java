@@ -0,0 +1,179 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import DAO.AccountDAO;
+import DAO.MessageStore;
+import Model.Message;
+
+/**
+ * Queues validated messages and inserts them from a single background thread in JDBC batches. A batch is flushed
+ * once it holds maxBatchSize messages, or maxDelayMillis after its first message arrived, whichever comes first.
+ * The posters of a batch are checked with one set-based account query, so a message from an unknown account does
+ * not fail the batch it shares; posters already verified by the caller are not queried again. Each caller gets a
+ * future that completes with the inserted message (including its message_id), or with null if its posted_by does not
+ * refer to an existing account.
+ */
+public class MessageBatchWriter implements AutoCloseable {
+    MessageStore messageDAO;
+    AccountDAO accountDAO;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final BlockingQueue<PendingMessage> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * @param messageDAO the DAO used to insert each batch.
+     * @param accountDAO the DAO used to check the posters of each batch.
+     * @param maxBatchSize the most messages inserted in one batch.
+     * @param maxDelayMillis how long the first message of a batch may wait for others to join it.
+     * @param queueCapacity how many messages may wait to be written before submit() rejects new ones.
+     */
+    public MessageBatchWriter(MessageStore messageDAO, AccountDAO accountDAO, int maxBatchSize, long maxDelayMillis,
+            int queueCapacity) {
+        this.messageDAO = messageDAO;
+        this.accountDAO = accountDAO;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::run, "message-batch-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a validated message to be inserted with the next batch.
+     *
+     * @param message a Message object that does not contain a message_id.
+     * @return CompletableFuture<Message> completes with the inserted message, or null if posted_by does not exist.
+     * It fails with a RejectedExecutionException if the queue is full or the writer is closed.
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        return submit(message, false);
+    }
+
+    /**
+     * Queue a validated message to be inserted with the next batch.
+     *
+     * @param message a Message object that does not contain a message_id.
+     * @param posterVerified true if posted_by is already known to refer to an existing account, so it is not checked.
+     * @return CompletableFuture<Message> completes with the inserted message, or null if posted_by does not exist.
+     * It fails with a RejectedExecutionException if the queue is full or the writer is closed.
+     */
+    public CompletableFuture<Message> submit(Message message, boolean posterVerified) {
+        PendingMessage pending = new PendingMessage(message, posterVerified);
+        if (closed || !queue.offer(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Message batch writer is "
+                    + (closed ? "closed" : "full")));
+        }
+        return pending.future;
+    }
+
+    /**
+     * @return the number of messages waiting to be written.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stop accepting messages, write the ones already queued and stop the writer thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                closed = true;
+            } catch (RuntimeException e) {
+                for (PendingMessage pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Insert one batch and complete the futures of its messages.
+     */
+    private void flush(List<PendingMessage> batch) {
+        Set<Integer> posters = new HashSet<>();
+        for (PendingMessage pending : batch) {
+            if (!pending.posterVerified) {
+                posters.add(pending.message.getPosted_by());
+            }
+        }
+        Set<Integer> existing = posters.isEmpty() ? posters : accountDAO.getExistingAccountIds(posters);
+
+        List<PendingMessage> valid = new ArrayList<>(batch.size());
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            if (pending.posterVerified || existing.contains(pending.message.getPosted_by())) {
+                valid.add(pending);
+                messages.add(pending.message);
+            } else {
+                pending.future.complete(null);
+            }
+        }
+
+        List<Message> inserted = messageDAO.insertMessages(messages);
+        for (int i = 0; i < valid.size(); i++) {
+            PendingMessage pending = valid.get(i);
+            // if the batch was rolled back, insert its messages one at a time so one bad row only fails itself
+            pending.future.complete(inserted != null ? inserted.get(i) : messageDAO.insertMessage(pending.message));
+        }
+    }
+
+    /**
+     * A queued message and the future its caller is waiting on.
+     */
+    private static final class PendingMessage {
+        private final Message message;
+        private final boolean posterVerified;
+        private final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        PendingMessage(Message message, boolean posterVerified) {
+            this.message = message;
+            this.posterVerified = posterVerified;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package Service;
+
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import Model.Message;
+import Util.CacheStats;
+import Util.JsonUtil;
+
+/**
+ * A size-bounded, read-through cache of messages by message_id, for the hot single-message reads. The cache is split
+ * into segments by message_id, each a small least-recently-used map with its own lock, so concurrent reads of
+ * different messages rarely contend.
+ *
+ * Writes invalidate rather than update entries: MessageService calls invalidate() after an update or delete is
+ * committed, and the next read loads the new row. A read that loaded a row before the write committed can still try
+ * to cache it afterwards, so every invalidation also bumps its segment's version, and put() only caches a message if
+ * the version has not changed since the read started (see version()). Message objects are mutable, so copies are
+ * stored and handed out.
+ *
+ * Next to each message the cache keeps its JSON encoding, built on the first getJson() and dropped with the message,
+ * so repeated reads of a hot message write the same bytes instead of serializing it again.
+ */
+public class MessageCache {
+    private static final int SEGMENTS = 64;
+
+    private final int maxSize;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of messages held at once, split evenly across the segments.
+     */
+    public MessageCache(int maxSize) {
+        this.maxSize = maxSize;
+        int segmentSize = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * @param message_id the message_id to look up.
+     * @return a copy of the cached message, or null on a miss.
+     */
+    public Message get(int message_id) {
+        CachedMessage entry = lookup(message_id);
+        return entry == null ? null : copy(entry.message);
+    }
+
+    /**
+     * @param message_id the message_id to look up.
+     * @return the JSON encoding of the cached message, as written by JsonUtil.MESSAGE_WRITER, or null on a miss. The
+     * array is shared and must not be modified.
+     * @throws UncheckedIOException if the message cannot be encoded.
+     */
+    public byte[] getJson(int message_id) {
+        CachedMessage entry = lookup(message_id);
+        return entry == null ? null : entry.json();
+    }
+
+    private CachedMessage lookup(int message_id) {
+        Segment segment = segment(message_id);
+        CachedMessage entry;
+        synchronized (segment) {
+            entry = segment.messages.get(message_id);
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    /**
+     * @param message_id the message_id about to be read from the database.
+     * @return the version to pass to put() once the read is done.
+     */
+    public long version(int message_id) {
+        Segment segment = segment(message_id);
+        synchronized (segment) {
+            return segment.version;
+        }
+    }
+
+    /**
+     * Cache a message read from the database, unless it may have been written since the read started.
+     *
+     * @param message the message that was read, including its message_id.
+     * @param version the value version() returned before the read.
+     */
+    public void put(Message message, long version) {
+        Segment segment = segment(message.getMessage_id());
+        synchronized (segment) {
+            if (segment.version == version) {
+                segment.messages.put(message.getMessage_id(), new CachedMessage(copy(message)));
+            }
+        }
+    }
+
+    /**
+     * Drop a message that was updated or deleted.
+     *
+     * @param message_id the message_id of the written message.
+     */
+    public void invalidate(int message_id) {
+        Segment segment = segment(message_id);
+        synchronized (segment) {
+            segment.messages.remove(message_id);
+            segment.version++;
+        }
+    }
+
+    /**
+     * Drop every cached message.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.messages.clear();
+                segment.version++;
+            }
+        }
+    }
+
+    /**
+     * @return a snapshot of the cache's size and hit ratio.
+     */
+    public CacheStats getStats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.messages.size();
+            }
+        }
+        return new CacheStats(size, maxSize, hits.sum(), misses.sum());
+    }
+
+    private Segment segment(int message_id) {
+        return segments[Math.floorMod(message_id, SEGMENTS)];
+    }
+
+    private static Message copy(Message message) {
+        return new Message(message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+                message.getTime_posted_epoch());
+    }
+
+    /**
+     * @param message the message to encode.
+     * @return the message's JSON encoding, as written by JsonUtil.MESSAGE_WRITER.
+     * @throws UncheckedIOException if the message cannot be encoded.
+     */
+    public static byte[] encode(Message message) {
+        try {
+            return JsonUtil.MESSAGE_WRITER.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A cached message and, once requested, its JSON encoding. The message is never modified after it is cached, so
+     * encoding it twice in a race yields the same bytes.
+     */
+    private static class CachedMessage {
+        final Message message;
+        volatile byte[] json;
+
+        CachedMessage(Message message) {
+            this.message = message;
+        }
+
+        byte[] json() {
+            byte[] encoded = json;
+            if (encoded == null) {
+                encoded = encode(message);
+                json = encoded;
+            }
+            return encoded;
+        }
+    }
+
+    /**
+     * One least-recently-used map of messages and the number of invalidations it has seen. Guarded by its own monitor.
+     */
+    private static class Segment {
+        final LinkedHashMap<Integer, CachedMessage> messages;
+        long version;
+
+        Segment(int maxSize) {
+            messages = new LinkedHashMap<Integer, CachedMessage>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, CachedMessage> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+    }
+}
@@ -1,27 +1,179 @@
 package Service;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
+import Model.ImportResult;
 import Model.Message;
-import DAO.MessageDAO;
+import Model.MessagePage;
+import DAO.MessageStore;
+import Util.CacheStats;
+import Util.ConnectionUtil;
+import Util.VersionTable;
 
 public class MessageService {
-    MessageDAO messageDAO;
+    /**
+     * Page size used when a page is requested without an explicit limit.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    /**
+     * Largest page size a client may request.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+    /**
+     * Number of messages validated and inserted together (one batch, one transaction) by importMessages.
+     */
+    public static final int IMPORT_CHUNK_SIZE = 500;
+    /**
+     * Number of search results returned when a search is requested without an explicit limit.
+     */
+    public static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+    /**
+     * Largest number of search results a client may request at once, since each result is read by message_id.
+     */
+    public static final int MAX_SEARCH_PAGE_SIZE = 100;
+    /**
+     * Largest number of search results a client may skip, since every skipped result is ranked too.
+     */
+    public static final int MAX_SEARCH_OFFSET = 10000;
+
+    /**
+     * Timeline cache shared by every MessageService that uses the configured message store, holding the newest
+     * cache.timelines.depth messages of each account and at most cache.timelines.maxMessages message slots in total
+     * (see TimelineCache).
+     * Cleared when the database is reset.
+     */
+    private static final TimelineCache sharedTimelineCache = new TimelineCache(
+            Integer.getInteger("cache.timelines.depth", 2 * DEFAULT_PAGE_SIZE),
+            Integer.getInteger("cache.timelines.maxMessages", 100000));
+
+    /**
+     * Message cache shared by every MessageService that uses the configured message store, holding at most
+     * cache.messages.maxSize messages. Cleared when the database is reset.
+     */
+    private static final MessageCache sharedMessageCache = new MessageCache(
+            Integer.getInteger("cache.messages.maxSize", 10000));
+
+    /**
+     * Versions of single messages and of account timelines, bumped by every write made through any MessageService,
+     * for the ETags of GET /messages/{message_id} and GET /accounts/{account_id}/messages.
+     */
+    private static final VersionTable messageVersions = new VersionTable(1 << 16);
+    private static final VersionTable timelineVersions = new VersionTable(1 << 14);
+    /**
+     * Search index shared by every MessageService that uses the configured message store. Built in the background by
+     * buildSearchIndex() at startup; dropped when the database is reset, and built again in the background on the
+     * next search.
+     */
+    private static final SearchIndex sharedSearchIndex = new SearchIndex();
+
+    static {
+        ConnectionUtil.addResetListener(sharedTimelineCache::clear);
+        ConnectionUtil.addResetListener(sharedMessageCache::clear);
+        ConnectionUtil.addResetListener(messageVersions::reset);
+        ConnectionUtil.addResetListener(timelineVersions::reset);
+        ConnectionUtil.addResetListener(sharedSearchIndex::clear);
+    }
+
+    MessageStore messageDAO;
+    MessageBatchWriter batchWriter;
+    TimelineCache timelineCache;
+    MessageCache messageCache;
+    SearchIndex searchIndex;
 
     /**
-     * No-args constructor for a messageService to instantiate a plain messageDAO.
+     * No-args constructor for a messageService to use the message store chosen by the messages.store system property
+     * and the shared caches and search index.
      */
     public MessageService() {
-        messageDAO = new MessageDAO();
+        messageDAO = MessageStore.fromConfig();
+        timelineCache = sharedTimelineCache;
+        messageCache = sharedMessageCache;
+        searchIndex = sharedSearchIndex;
     }
 
     /**
-     * Constructor for a messageService when a messageDAO is provided.
+     * Constructor for a messageService when a messageDAO is provided. Nothing is cached, and the messageService has a
+     * search index of its own.
      * 
      * @param messageDAO
      */
-    public MessageService(MessageDAO messageDAO) {
+    public MessageService(MessageStore messageDAO) {
+        this.messageDAO = messageDAO;
+        this.searchIndex = new SearchIndex();
+    }
+
+    /**
+     * Constructor for a messageService when a messageDAO and its caches are provided. Either cache may be null. The
+     * messageService has a search index of its own.
+     *
+     * @param messageDAO
+     * @param timelineCache
+     * @param messageCache
+     */
+    public MessageService(MessageStore messageDAO, TimelineCache timelineCache, MessageCache messageCache) {
+        this.messageDAO = messageDAO;
+        this.timelineCache = timelineCache;
+        this.messageCache = messageCache;
+        this.searchIndex = new SearchIndex();
+    }
+
+    /**
+     * Constructor for a messageService that writes new messages through the given batch writer in addMessageAsync.
+     * The messageDAO must be the configured message store, since the shared caches are used.
+     *
+     * @param messageDAO
+     * @param batchWriter
+     */
+    public MessageService(MessageStore messageDAO, MessageBatchWriter batchWriter) {
         this.messageDAO = messageDAO;
+        this.batchWriter = batchWriter;
+        this.timelineCache = sharedTimelineCache;
+        this.messageCache = sharedMessageCache;
+        this.searchIndex = sharedSearchIndex;
+    }
+
+    /**
+     * Start building the shared search index from the configured message store on a background thread, so searches
+     * are served from the index without the first one paying for the build.
+     */
+    public static void buildSearchIndex() {
+        sharedSearchIndex.buildInBackground(MessageStore.fromConfig());
+    }
+
+    /**
+     * @return the size and hit ratio of the shared timeline cache.
+     */
+    public static CacheStats getSharedTimelineCacheStats() {
+        return sharedTimelineCache.getStats();
+    }
+
+    /**
+     * @return the size and hit ratio of the shared message cache.
+     */
+    public static CacheStats getSharedMessageCacheStats() {
+        return sharedMessageCache.getStats();
+    }
+
+    /**
+     * @param message_id the id of a message, which need not exist.
+     * @return an ETag that changes whenever the message is inserted, updated or deleted. Take it before reading the
+     * message, so the ETag is never newer than the message it is sent with.
+     */
+    public static String getMessageETag(int message_id) {
+        return messageVersions.etag(message_id);
+    }
+
+    /**
+     * @param account_id the id of an account, which need not exist.
+     * @return an ETag that changes whenever one of the account's messages is inserted, updated or deleted. Take it
+     * before reading the timeline, so the ETag is never newer than the timeline it is sent with.
+     */
+    public static String getTimelineETag(int account_id) {
+        return timelineVersions.etag(account_id);
     }
 
     /**
@@ -35,50 +187,427 @@ public class MessageService {
     }
 
     /**
-     * Use the MessageDAO to retrieve a single message in the database by it's message_id.
+     * Use the MessageDAO to pass every message in the database to the given consumer without building a list.
+     *
+     * @param consumer receives each retrieved message.
+     */
+    public void streamAllMessages(Consumer<Message> consumer) {
+        messageDAO.streamAllMessages(consumer);
+    }
+
+    /**
+     * Use the MessageDAO to pass every message posted in the given time range to the given consumer, oldest first,
+     * without building a list.
+     *
+     * @param since the earliest time_posted_epoch to include.
+     * @param until the latest time_posted_epoch to include.
+     * @param consumer receives each retrieved message.
+     */
+    public void streamMessagesBetween(long since, long until, Consumer<Message> consumer) {
+        messageDAO.streamMessagesBetween(since, until, consumer);
+    }
+
+    /**
+     * Use the MessageDAO to retrieve one page of messages with a message_id greater than the given cursor.
+     * One extra record is requested so the next cursor is only set when another page actually exists.
+     *
+     * @param after the message_id cursor returned with the previous page (0 for the first page).
+     * @param limit the maximum number of messages on the page (1 to MAX_PAGE_SIZE).
+     * @return MessagePage the retrieved messages and the cursor for the following page.
+     */
+    public MessagePage getMessagesPage(int after, int limit) {
+        List<Message> messages = messageDAO.getMessagesAfter(after, limit + 1);
+        String next_cursor = null;
+        if (messages.size() > limit) {
+            messages = messages.subList(0, limit);
+            next_cursor = String.valueOf(messages.get(limit - 1).getMessage_id());
+        }
+        return new MessagePage(messages, next_cursor);
+    }
+
+    /**
+     * Retrieve one page of an account's timeline, newest first (by time_posted_epoch, then message_id), from the
+     * timeline cache, or with the MessageDAO when the account is not cached or the page is deeper than its cached
+     * messages. The cursor for the following page has the form time_posted_epoch:message_id of the last message.
+     * One extra record is requested so the next cursor is only set when another page actually exists.
+     *
+     * @param account_id the id of the account that posted the messages.
+     * @param before the cursor returned with the previous page, or null for the newest page.
+     * @param limit the maximum number of messages on the page (1 to MAX_PAGE_SIZE).
+     * @return MessagePage the retrieved messages and the cursor for the following page.
+     * @throws IllegalArgumentException if before is not a valid cursor.
+     */
+    public MessagePage getTimelinePage(int account_id, String before, int limit) {
+        long before_time = Long.MAX_VALUE;
+        int before_id = Integer.MAX_VALUE;
+        if (before != null) {
+            String[] parts = before.split(":");
+            try {
+                if (parts.length != 2) {
+                    throw new NumberFormatException();
+                }
+                before_time = Long.parseLong(parts[0]);
+                before_id = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("before must have the form time_posted_epoch:message_id");
+            }
+        }
+        List<Message> messages = getCachedPage(account_id, before_time, before_id, limit + 1);
+        if (messages == null) {
+            messages = messageDAO.getMessagesPostedByBefore(account_id, before_time, before_id, limit + 1);
+        }
+        String next_cursor = null;
+        if (messages.size() > limit) {
+            messages = messages.subList(0, limit);
+            Message last = messages.get(limit - 1);
+            next_cursor = last.getTime_posted_epoch() + ":" + last.getMessage_id();
+        }
+        return new MessagePage(messages, next_cursor);
+    }
+
+    /**
+     * Look up a timeline page in the timeline cache, loading the account's newest messages into it first if the
+     * account is not cached yet.
+     *
+     * @return List<Message> the page, or null if it has to be read with the MessageDAO.
+     */
+    private List<Message> getCachedPage(int account_id, long before_time, int before_id, int limit) {
+        if (timelineCache == null) {
+            return null;
+        }
+        List<Message> messages = timelineCache.getPage(account_id, before_time, before_id, limit);
+        if (messages == null && loadTimeline(account_id)) {
+            messages = timelineCache.getPage(account_id, before_time, before_id, limit);
+        }
+        return messages;
+    }
+
+    /**
+     * Load an uncached account's newest messages into the timeline cache. One extra message is read to tell whether
+     * the cached messages are all of the account's messages. If the read fails, the load is cancelled so a later read
+     * can try again.
+     *
+     * @return boolean true if the account was loaded, false if it was already cached or being loaded.
+     */
+    private boolean loadTimeline(int account_id) {
+        long token = timelineCache.startLoad(account_id);
+        if (token == 0) {
+            return false;
+        }
+        int depth = timelineCache.getDepth();
+        List<Message> newest;
+        try {
+            newest = messageDAO.getMessagesPostedByBefore(account_id, Long.MAX_VALUE, Integer.MAX_VALUE, depth + 1);
+        } catch (RuntimeException e) {
+            timelineCache.cancelLoad(account_id, token);
+            throw e;
+        }
+        timelineCache.finishLoad(account_id, token, newest, newest.size() <= depth);
+        return true;
+    }
+
+    /**
+     * Search message_text with the search index. While the index is not built yet, its build is started in the
+     * background if it is not running, and the messages are searched with a scan of the MessageDAO instead, with the
+     * same results. Only messages that contain every word of the query match, best match first (see SearchIndex). The
+     * cursor for the following page is the offset of its first result. One extra result is requested so the next
+     * cursor is only set when another page actually exists.
+     *
+     * @param query the words to search for.
+     * @param offset the number of best results to skip (0 for the first page).
+     * @param limit the maximum number of messages on the page (1 to MAX_SEARCH_PAGE_SIZE).
+     * @return MessagePage the matching messages and the cursor for the following page.
+     * @throws IllegalArgumentException if the query has no words.
+     */
+    public MessagePage searchMessages(String query, int offset, int limit) {
+        if (SearchIndex.words(query).isEmpty()) {
+            throw new IllegalArgumentException("q must contain at least one word");
+        }
+        List<Integer> ids;
+        if (searchIndex.isBuilt()) {
+            ids = searchIndex.search(query, offset, limit + 1);
+        } else {
+            searchIndex.buildInBackground(messageDAO);
+            ids = SearchIndex.scan(messageDAO, query, offset, limit + 1);
+        }
+        String next_cursor = null;
+        if (ids.size() > limit) {
+            ids = ids.subList(0, limit);
+            next_cursor = String.valueOf(offset + limit);
+        }
+        List<Message> messages = new ArrayList<>(ids.size());
+        for (int message_id : ids) {
+            // a message deleted since the search is left out
+            Message message = getMessageById(message_id);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return new MessagePage(messages, next_cursor);
+    }
+
+    /**
+     * Retrieve a single message by it's message_id from the message cache, or else with the MessageDAO, caching the
+     * retrieved message.
      *
      * @return Message the retrieved message as a Message object.
      */
     public Message getMessageById(int message_id) {
+        if (messageCache == null) {
+            return messageDAO.getMessageById(message_id);
+        }
+        Message message = messageCache.get(message_id);
+        return message != null ? message : readThrough(message_id);
+    }
+
+    /**
+     * Retrieve a single message by it's message_id like getMessageById, as its JSON encoding. A cached message's
+     * encoding is kept in the message cache, so it is only built again once the message changes.
+     *
+     * @return byte[] the message as written by JsonUtil.MESSAGE_WRITER, or null if there is no such message. The
+     * array may be shared and must not be modified.
+     * @throws java.io.UncheckedIOException if the message cannot be encoded.
+     */
+    public byte[] getMessageJsonById(int message_id) {
+        byte[] json = getCachedMessageJson(message_id);
+        if (json != null) {
+            return json;
+        }
+        Message message = messageCache == null ? messageDAO.getMessageById(message_id) : readThrough(message_id);
+        return message == null ? null : MessageCache.encode(message);
+    }
+
+    /**
+     * @return byte[] the JSON encoding of the message if it is in the message cache, or else null.
+     * @throws java.io.UncheckedIOException if the message cannot be encoded.
+     */
+    public byte[] getCachedMessageJson(int message_id) {
+        return messageCache == null ? null : messageCache.getJson(message_id);
+    }
+
+    /**
+     * Read a message that missed the message cache with the MessageDAO, and cache it.
+     */
+    private Message readThrough(int message_id) {
+        long version = messageCache.version(message_id);
         Message message = messageDAO.getMessageById(message_id);
+        if (message != null) {
+            messageCache.put(message, version);
+        }
         return message;
     }
 
     /**
-     * Use the MessageDAO to retrieve all messages in the database posted by the given account_id.
+     * Retrieve all messages posted by the given account_id, from the timeline cache when it holds all of them, or
+     * else with the MessageDAO.
      *
      * @return List<Message> a list of the retrieved messages.
      */
     public List<Message> getAllMessagesPostedBy(int account_id) {
-        List<Message> messages = messageDAO.getAllMessagesPostedBy(account_id);
+        List<Message> messages = getAllCached(account_id);
+        if (messages == null) {
+            messages = messageDAO.getAllMessagesPostedBy(account_id);
+        }
+        return messages;
+    }
+
+    /**
+     * Pass all messages posted by the given account_id to the given consumer, from the timeline cache when it holds
+     * all of them, or else with the MessageDAO without building a list.
+     *
+     * @param account_id the id of the account that posted the messages.
+     * @param consumer receives each retrieved message.
+     */
+    public void streamAllMessagesPostedBy(int account_id, Consumer<Message> consumer) {
+        List<Message> messages = getAllCached(account_id);
+        if (messages == null) {
+            messageDAO.streamAllMessagesPostedBy(account_id, consumer);
+        } else {
+            messages.forEach(consumer);
+        }
+    }
+
+    /**
+     * Use the MessageDAO to pass the messages posted by the given account_id in the given time range to the given
+     * consumer, oldest first, without building a list.
+     *
+     * @param account_id the id of the account that posted the messages.
+     * @param since the earliest time_posted_epoch to include.
+     * @param until the latest time_posted_epoch to include.
+     * @param consumer receives each retrieved message.
+     */
+    public void streamMessagesPostedByBetween(int account_id, long since, long until, Consumer<Message> consumer) {
+        messageDAO.streamMessagesPostedByBetween(account_id, since, until, consumer);
+    }
+
+    /**
+     * @return List<Message> every message of the account in message_id order from the timeline cache, or null if the
+     * cache does not hold all of them.
+     */
+    private List<Message> getAllCached(int account_id) {
+        if (timelineCache == null) {
+            return null;
+        }
+        List<Message> messages = timelineCache.getAll(account_id);
+        if (messages == null && loadTimeline(account_id)) {
+            messages = timelineCache.getAll(account_id);
+        }
         return messages;
     }
 
     /**
      * Use the MessageDAO to add a new message to the database, given an Message object with a non-empty text (max 255 characters) that is connected to an existing user.
+     * The existence of the user is not looked up beforehand: the foreign key on posted_by rejects the insert instead,
+     * so a post costs a single statement.
      *
      * @param message an object representing a new message.
      * @return Message the newly added message if the insert operation was successful, including the message_id.
      */
     public Message addMessage(Message message) {
-        AccountService accountService = new AccountService();
-        if (message.getMessage_text().length() == 0 || message.getMessage_text().length() > 255 || !accountService.checkAccount(message.getPosted_by())) {
+        return addMessage(message, false);
+    }
+
+    /**
+     * Add a new message like addMessage(Message). When posterVerified is true, posted_by is already known to refer to
+     * an existing account (it was taken from a verified session token), so stores that look the account up skip it.
+     *
+     * @param message an object representing a new message.
+     * @param posterVerified true if posted_by is known to refer to an existing account.
+     * @return Message the newly added message if the insert operation was successful, including the message_id.
+     */
+    public Message addMessage(Message message, boolean posterVerified) {
+        if (message.getMessage_text().length() == 0 || message.getMessage_text().length() > 255) {
             return null;
         }
-        return messageDAO.insertMessage(message);
+        Message added = posterVerified ? messageDAO.insertVerifiedMessage(message) : messageDAO.insertMessage(message);
+        if (added != null) {
+            inserted(added);
+        }
+        return added;
+    }
+
+    /**
+     * Validate a new message like addMessage, then hand it to the batch writer to be inserted with other messages.
+     * Without a batch writer the message is inserted immediately.
+     *
+     * @param message an object representing a new message.
+     * @return CompletableFuture<Message> completes with the newly added message, including the message_id, or with
+     * null if the message is invalid or posted_by does not refer to an existing account.
+     */
+    public CompletableFuture<Message> addMessageAsync(Message message) {
+        return addMessageAsync(message, false);
+    }
+
+    /**
+     * Validate a new message like addMessageAsync(Message). When posterVerified is true, posted_by is already known
+     * to refer to an existing account, so it is not checked again.
+     *
+     * @param message an object representing a new message.
+     * @param posterVerified true if posted_by is known to refer to an existing account.
+     * @return CompletableFuture<Message> completes with the newly added message, including the message_id, or with
+     * null if the message is invalid or posted_by does not refer to an existing account.
+     */
+    public CompletableFuture<Message> addMessageAsync(Message message, boolean posterVerified) {
+        if (batchWriter == null) {
+            return CompletableFuture.completedFuture(addMessage(message, posterVerified));
+        }
+        if (message.getMessage_text().length() == 0 || message.getMessage_text().length() > 255) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return batchWriter.submit(message, posterVerified).thenApply(added -> {
+            if (added != null) {
+                inserted(added);
+            }
+            return added;
+        });
+    }
+
+    /**
+     * Import messages posted by one account in chunks of IMPORT_CHUNK_SIZE. Every message is validated with the same
+     * rules as addMessage, except that the account comes from a verified session token and is not looked up again: a
+     * message without a posted_by is posted by that account, and one naming a different account is rejected with
+     * status 403. The valid messages of a chunk are inserted with one JDBC batch in one transaction. Only one chunk is
+     * held in memory at a time, and the result of each message is passed to the given consumer as soon as its chunk is
+     * done, in input order.
+     *
+     * @param messages the messages to import, which do not contain message_ids.
+     * @param account_id the account_id of the verified session token.
+     * @param results receives the result of each message.
+     */
+    public void importMessages(Iterator<Message> messages, int account_id, Consumer<ImportResult> results) {
+        List<Message> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        int index = 0;
+        while (messages.hasNext()) {
+            chunk.add(messages.next());
+            if (chunk.size() == IMPORT_CHUNK_SIZE || !messages.hasNext()) {
+                importChunk(chunk, account_id, index, results);
+                index += chunk.size();
+                chunk.clear();
+            }
+        }
+    }
+
+    /**
+     * Validate and insert one chunk of importMessages.
+     */
+    private void importChunk(List<Message> chunk, int account_id, int firstIndex, Consumer<ImportResult> results) {
+        ImportResult[] chunkResults = new ImportResult[chunk.size()];
+        List<Integer> validIndexes = new ArrayList<>(chunk.size());
+        List<Message> valid = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Message message = chunk.get(i);
+            String text = message.getMessage_text();
+            if (message.getPosted_by() == 0) {
+                message.setPosted_by(account_id);
+            }
+            if (message.getPosted_by() != account_id) {
+                chunkResults[i] = new ImportResult(firstIndex + i, 403, "posted_by does not match the session token");
+            } else if (text == null || text.length() == 0 || text.length() > 255) {
+                chunkResults[i] = new ImportResult(firstIndex + i, "message_text must be between 1 and 255 characters");
+            } else {
+                validIndexes.add(i);
+                valid.add(message);
+            }
+        }
+
+        List<Message> inserted = messageDAO.insertMessages(valid);
+        for (int j = 0; j < valid.size(); j++) {
+            int i = validIndexes.get(j);
+            // if the batch was rolled back, insert its messages one at a time so one bad row only fails itself
+            Message message = inserted != null ? inserted.get(j) : messageDAO.insertVerifiedMessage(valid.get(j));
+            if (message != null) {
+                inserted(message);
+            }
+            chunkResults[i] = message != null ? new ImportResult(firstIndex + i, message)
+                    : new ImportResult(firstIndex + i, "message could not be inserted");
+        }
+        for (ImportResult result : chunkResults) {
+            results.accept(result);
+        }
     }
 
     /**
      * Use the MessageDAO to update the message_text of a single message in the database by it's message_id.
-     * The message_text must be non-empty and less than 256 characters, and a record with the given message_id must exist.
+     * The message_text must be non-empty and less than 256 characters, and a record with the given message_id must
+     * exist; the update itself reports a missing record, so the message is not read beforehand.
      *
      * @return Message the updated record as a Message object.
      */
     public Message updateMessageById(int message_id, String message_text) {
-        if (message_text.length() == 0 || message_text.length() > 255 || getMessageById(message_id) == null) {
+        if (message_text.length() == 0 || message_text.length() > 255) {
             return null;
         }
         Message message = messageDAO.updateMessageById(message_id, message_text);
+        if (message != null) {
+            if (messageCache != null) {
+                messageCache.invalidate(message_id);
+            }
+            if (timelineCache != null) {
+                timelineCache.onUpdate(message);
+            }
+            searchIndex.put(message);
+            bumpVersions(message);
+        }
         return message;
     }
 
@@ -89,6 +618,35 @@ public class MessageService {
      */
     public Message deleteMessageById(int message_id) {
         Message message = messageDAO.deleteMessageById(message_id);
+        if (message != null) {
+            if (messageCache != null) {
+                messageCache.invalidate(message_id);
+            }
+            if (timelineCache != null) {
+                timelineCache.onDelete(message);
+            }
+            searchIndex.remove(message_id);
+            bumpVersions(message);
+        }
         return message;
     }
+
+    /**
+     * Bring the caches and versions up to date with a message that was just inserted.
+     */
+    private void inserted(Message message) {
+        if (timelineCache != null) {
+            timelineCache.onInsert(message);
+        }
+        searchIndex.put(message);
+        bumpVersions(message);
+    }
+
+    /**
+     * Change the ETags of a written message and of its account's timeline.
+     */
+    private static void bumpVersions(Message message) {
+        messageVersions.bump(message.getMessage_id());
+        timelineVersions.bump(message.getPosted_by());
+    }
 }
@@ -0,0 +1,971 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import DAO.MessageStore;
+import Model.Message;
+
+/**
+ * An in-process inverted index of message_text, for ranked full-text search over messages. Text is split into
+ * lowercase words (runs of letters and digits), and each word maps to a posting list of the message_ids that
+ * contain it, along with how often. MessageService updates the index on every insert, update and delete. The index is
+ * built from the message store on a background thread, at startup or on the first search after a database reset;
+ * the scan only takes the lock for one batch of messages at a time, writes made meanwhile are queued and replayed
+ * once it is done, and until then scan() answers searches straight from the store with the same ranking.
+ *
+ * Posting lists are compressed: ids are kept in ascending order in blocks of BLOCK_SIZE entries, each entry
+ * stored as variable-length integers (the gap from the previous id, the message's generation, the word's count and the
+ * message's length), with the first id of every block kept uncompressed so a lookup only decodes one block. New
+ * messages get ever larger ids and are appended; the few entries that arrive out of order (re-indexed updates) wait in
+ * a small sorted side list until it is merged in.
+ *
+ * Updated and deleted messages are not removed from the lists of their old words. Instead each message has a
+ * generation, bumped whenever it changes, and entries of an older generation are skipped; they are dropped once
+ * they make up half of all entries, by rewriting every list.
+ *
+ * A search returns the messages that contain every word of the query, ranked by BM25 and then newest first. Every
+ * block also keeps the highest count and the shortest message length among its entries, which bound the score any of
+ * them can reach; blocks are ranked from the highest bound down, and the search stops at the first block that cannot
+ * beat the results found so far, without decoding the rest.
+ */
+public class SearchIndex {
+    private static final int BLOCK_SIZE = 32;
+    private static final int MAX_PENDING = 64;
+    private static final int MAX_WORD_LENGTH = 64;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    /**
+     * Number of messages indexed per write lock while building.
+     */
+    private static final int BUILD_BATCH_SIZE = 1024;
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndex.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HashMap<String, Postings> postings = new HashMap<>();
+    /**
+     * Generation, length in words (0 if not indexed) and number of distinct words of each message, by message_id.
+     */
+    private int[] generations = new int[1024];
+    private int[] lengths = new int[1024];
+    private int[] distinctWords = new int[1024];
+    private int documents;
+    private long totalLength;
+    private long entries;
+    private long staleEntries;
+    private volatile boolean built;
+    /**
+     * Writes made while the index is being built, replayed once every message has been read; null when no build is
+     * running.
+     */
+    private List<PendingWrite> writesDuringBuild;
+    /**
+     * Bumped by every build and clear, so a build that was cleared midway stops indexing and is dropped.
+     */
+    private long builds;
+
+    /**
+     * Split text into the words the index is keyed by.
+     *
+     * @param text any text.
+     * @return the number of occurrences of each lowercase word, in order of first occurrence.
+     */
+    public static Map<String, Integer> words(String text) {
+        Map<String, Integer> words = new LinkedHashMap<>();
+        int i = 0;
+        while (i < text.length()) {
+            while (i < text.length() && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                String word = text.substring(start, Math.min(i, start + MAX_WORD_LENGTH)).toLowerCase(Locale.ROOT);
+                words.merge(word, 1, Integer::sum);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return whether the index is built, i.e. search() sees every message.
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Build the index from every message in the store on the calling thread, unless it is already built or being
+     * built.
+     *
+     * @param store the store to read the messages from.
+     */
+    public void build(MessageStore store) {
+        long build = startBuild();
+        if (build != 0) {
+            build(store, build);
+        }
+    }
+
+    /**
+     * Build the index from every message in the store on a new daemon thread, unless it is already built or being
+     * built.
+     *
+     * @param store the store to read the messages from.
+     */
+    public void buildInBackground(MessageStore store) {
+        long build = startBuild();
+        if (build != 0) {
+            Thread builder = new Thread(() -> build(store, build), "search-index-builder");
+            builder.setDaemon(true);
+            builder.start();
+        }
+    }
+
+    /**
+     * @return the number of the new build, or 0 if the index is already built or being built.
+     */
+    private long startBuild() {
+        lock.writeLock().lock();
+        try {
+            if (built || writesDuringBuild != null) {
+                return 0;
+            }
+            writesDuringBuild = new ArrayList<>();
+            return ++builds;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index every message in the store a batch at a time, then replay the writes made meanwhile, which are newer than
+     * (or the same as) what the store returned for their messages. A failed build is dropped, so the next search
+     * starts another one.
+     */
+    private void build(MessageStore store, long build) {
+        List<Message> batch = new ArrayList<>(BUILD_BATCH_SIZE);
+        try {
+            store.streamAllMessages(message -> {
+                batch.add(message);
+                if (batch.size() == BUILD_BATCH_SIZE) {
+                    indexBatch(batch, build);
+                    batch.clear();
+                }
+            });
+            lock.writeLock().lock();
+            try {
+                if (builds != build) {
+                    return;
+                }
+                for (Message message : batch) {
+                    index(message);
+                }
+                for (PendingWrite write : writesDuringBuild) {
+                    if (write.message != null) {
+                        index(write.message);
+                    } else {
+                        unindex(write.message_id);
+                    }
+                }
+                writesDuringBuild = null;
+                compactIfStale();
+                built = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Building the search index failed", e);
+            lock.writeLock().lock();
+            try {
+                if (builds == build) {
+                    reset();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void indexBatch(List<Message> batch, long build) {
+        lock.writeLock().lock();
+        try {
+            if (builds == build) {
+                for (Message message : batch) {
+                    index(message);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index a new or updated message. Indexing a message that is already indexed replaces it.
+     *
+     * @param message the message, including its message_id.
+     */
+    public void put(Message message) {
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                index(message);
+                compactIfStale();
+            } else if (writesDuringBuild != null) {
+                writesDuringBuild.add(new PendingWrite(message.getMessage_id(), message));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a deleted message.
+     *
+     * @param message_id the message_id of the deleted message.
+     */
+    public void remove(int message_id) {
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                unindex(message_id);
+                compactIfStale();
+            } else if (writesDuringBuild != null) {
+                writesDuringBuild.add(new PendingWrite(message_id, null));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the whole index, and stop a build that is running, so it is built again on the next search.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            builds++;
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Must hold the write lock.
+     */
+    private void reset() {
+        postings.clear();
+        generations = new int[1024];
+        lengths = new int[1024];
+        distinctWords = new int[1024];
+        documents = 0;
+        totalLength = 0;
+        entries = 0;
+        staleEntries = 0;
+        built = false;
+        writesDuringBuild = null;
+    }
+
+    /**
+     * @param query the words to search for.
+     * @param offset the number of best results to skip.
+     * @param limit the maximum number of results.
+     * @return the message_ids of up to limit messages that contain every word of the query, best match first.
+     */
+    public List<Integer> search(String query, int offset, int limit) {
+        Map<String, Integer> words = words(query);
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[words.size()];
+            int n = 0;
+            for (String word : words.keySet()) {
+                Postings list = postings.get(word);
+                if (list == null) {
+                    return new ArrayList<>();
+                }
+                lists[n++] = list;
+            }
+            if (n == 0) {
+                return new ArrayList<>();
+            }
+            // the shortest list drives the search, and every other list is only probed for its candidates
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+            double[] idf = new double[n];
+            for (int i = 0; i < n; i++) {
+                // list sizes include stale entries, so they can exceed the number of documents
+                double df = Math.min(lists[i].size, documents);
+                idf[i] = Math.log(1 + (documents - df + 0.5) / (df + 0.5));
+            }
+            double averageLength = documents == 0 ? 1 : (double) totalLength / documents;
+            int wanted = offset + limit;
+            Postings.Cursor[] cursors = new Postings.Cursor[n];
+            for (int i = 1; i < n; i++) {
+                cursors[i] = lists[i].cursor();
+            }
+            // worst of the best results at the head
+            PriorityQueue<Result> best = new PriorityQueue<>(Math.min(wanted, 1024) + 1);
+            EntryConsumer rank = (id, generation, count, length) -> {
+                if (generations[id] != generation || lengths[id] == 0) {
+                    return;
+                }
+                double score = score(idf[0], count, length, averageLength);
+                for (int i = 1; i < cursors.length; i++) {
+                    int other = cursors[i].count(id, generation);
+                    if (other == 0) {
+                        return;
+                    }
+                    score += score(idf[i], other, length, averageLength);
+                }
+                if (best.size() < wanted) {
+                    best.add(new Result(id, score));
+                } else if (best.peek().compareTo(score, id) < 0) {
+                    best.poll();
+                    best.add(new Result(id, score));
+                }
+            };
+            Postings driver = lists[0];
+            // the best score any entry of each block could reach, added up in the same order as real scores
+            double[] bounds = new double[driver.blocks];
+            for (int block = 0; block < driver.blocks; block++) {
+                int minLength = driver.blockMinLengths[block];
+                bounds[block] = score(idf[0], driver.blockMaxCounts[block], minLength, averageLength);
+                for (int i = 1; i < n && bounds[block] > 0; i++) {
+                    int otherCount = lists[i].maxCount(driver.blockFirstIds[block], driver.blockMaxId(block));
+                    bounds[block] = otherCount == 0 ? 0 : bounds[block]
+                            + score(idf[i], otherCount, Math.max(minLength, lists[i].minLength), averageLength);
+                }
+            }
+            // visit the blocks from the highest bound down, newer first on ties, until none left can beat the results
+            BlockQueue order = new BlockQueue(bounds);
+            driver.forEachPending(rank);
+            for (int block = order.poll(); block >= 0; block = order.poll()) {
+                if (bounds[block] == 0) {
+                    break;
+                }
+                if (best.size() == wanted) {
+                    Result worst = best.peek();
+                    if (bounds[block] < worst.score
+                            || (bounds[block] == worst.score && driver.blockMaxId(block) <= worst.message_id)) {
+                        break;
+                    }
+                }
+                driver.forEachInBlock(block, rank);
+            }
+            return page(best, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search every message in the store without the index, for while it is being built. One pass over the store
+     * collects the same statistics the index keeps, and the matches are ranked the same way as by search().
+     *
+     * @param store the store to read the messages from.
+     * @param query the words to search for.
+     * @param offset the number of best results to skip.
+     * @param limit the maximum number of results.
+     * @return the message_ids of up to limit messages that contain every word of the query, best match first.
+     */
+    public static List<Integer> scan(MessageStore store, String query, int offset, int limit) {
+        String[] queryWords = words(query).keySet().toArray(new String[0]);
+        int n = queryWords.length;
+        if (n == 0) {
+            return new ArrayList<>();
+        }
+        int[] df = new int[n];
+        long[] totals = new long[2];
+        // message_id, length, and the count of each query word of every message that has all of them
+        List<int[]> matches = new ArrayList<>();
+        store.streamAllMessages(message -> {
+            Map<String, Integer> words = words(message.getMessage_text());
+            int length = 0;
+            for (int count : words.values()) {
+                length += count;
+            }
+            if (length == 0) {
+                return;
+            }
+            totals[0]++;
+            totals[1] += length;
+            int[] match = new int[n + 2];
+            match[0] = message.getMessage_id();
+            match[1] = length;
+            boolean all = true;
+            for (int i = 0; i < n; i++) {
+                Integer count = words.get(queryWords[i]);
+                if (count == null) {
+                    all = false;
+                } else {
+                    df[i]++;
+                    match[i + 2] = count;
+                }
+            }
+            if (all) {
+                matches.add(match);
+            }
+        });
+        long documents = totals[0];
+        // add the scores up in the same order as search(), rarest word first
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(df[a], df[b]));
+        double[] idf = new double[n];
+        for (int i = 0; i < n; i++) {
+            idf[i] = Math.log(1 + (documents - df[i] + 0.5) / (df[i] + 0.5));
+        }
+        double averageLength = documents == 0 ? 1 : (double) totals[1] / documents;
+        int wanted = offset + limit;
+        PriorityQueue<Result> best = new PriorityQueue<>(Math.min(wanted, 1024) + 1);
+        for (int[] match : matches) {
+            double score = 0;
+            for (int i : order) {
+                score += score(idf[i], match[i + 2], match[1], averageLength);
+            }
+            if (best.size() < wanted) {
+                best.add(new Result(match[0], score));
+            } else if (best.peek().compareTo(score, match[0]) < 0) {
+                best.poll();
+                best.add(new Result(match[0], score));
+            }
+        }
+        return page(best, offset, limit);
+    }
+
+    /**
+     * @return the message_ids of the best results past the offset, best first.
+     */
+    private static List<Integer> page(PriorityQueue<Result> best, int offset, int limit) {
+        Integer[] ranked = new Integer[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = best.poll().message_id;
+        }
+        List<Integer> page = new ArrayList<>(Math.max(0, Math.min(limit, ranked.length - offset)));
+        for (int i = offset; i < ranked.length; i++) {
+            page.add(ranked[i]);
+        }
+        return page;
+    }
+
+    /**
+     * @return the BM25 score of one word of a message, which never decreases with count and never increases with
+     *         length.
+     */
+    private static double score(double idf, int count, int length, double averageLength) {
+        double norm = K1 * (1 - B + B * length / averageLength);
+        return idf * count * (K1 + 1) / (count + norm);
+    }
+
+    /**
+     * @return the number of indexed messages.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Must hold the write lock.
+     */
+    private void index(Message message) {
+        int id = message.getMessage_id();
+        if (id >= lengths.length) {
+            int capacity = Math.max(lengths.length * 2, id + 1);
+            generations = Arrays.copyOf(generations, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            distinctWords = Arrays.copyOf(distinctWords, capacity);
+        }
+        if (lengths[id] > 0) {
+            retire(id);
+        }
+        int generation = ++generations[id];
+        Map<String, Integer> words = words(message.getMessage_text());
+        int length = 0;
+        for (int count : words.values()) {
+            length += count;
+        }
+        for (Map.Entry<String, Integer> word : words.entrySet()) {
+            postings.computeIfAbsent(word.getKey(), w -> new Postings()).add(id, generation, word.getValue(), length);
+        }
+        entries += words.size();
+        if (length > 0) {
+            lengths[id] = length;
+            distinctWords[id] = words.size();
+            documents++;
+            totalLength += length;
+        }
+    }
+
+    /**
+     * Stop a deleted message from matching, if it is indexed. Must hold the write lock.
+     */
+    private void unindex(int id) {
+        if (id < lengths.length && lengths[id] > 0) {
+            retire(id);
+            generations[id]++;
+        }
+    }
+
+    /**
+     * Count an indexed message's entries as stale and stop counting it as a document. Must hold the write lock.
+     */
+    private void retire(int id) {
+        staleEntries += distinctWords[id];
+        documents--;
+        totalLength -= lengths[id];
+        lengths[id] = 0;
+        distinctWords[id] = 0;
+    }
+
+    /**
+     * Rewrite every posting list without its stale entries once they are half of all entries. Must hold the write
+     * lock.
+     */
+    private void compactIfStale() {
+        if (staleEntries < 1024 || staleEntries * 2 < entries) {
+            return;
+        }
+        Iterator<Postings> lists = postings.values().iterator();
+        while (lists.hasNext()) {
+            Postings list = lists.next();
+            list.compact((id, generation) -> generations[id] == generation && lengths[id] > 0);
+            if (list.size == 0) {
+                lists.remove();
+            }
+        }
+        entries -= staleEntries;
+        staleEntries = 0;
+    }
+
+    /**
+     * A write made while the index was being built: the new or updated message, or null for a deleted one.
+     */
+    private static class PendingWrite {
+        final int message_id;
+        final Message message;
+
+        PendingWrite(int message_id, Message message) {
+            this.message_id = message_id;
+            this.message = message;
+        }
+    }
+
+    private static class Result implements Comparable<Result> {
+        final int message_id;
+        final double score;
+
+        Result(int message_id, double score) {
+            this.message_id = message_id;
+            this.score = score;
+        }
+
+        /**
+         * Lower scores, then older messages, come first, so the head of the queue is the worst result.
+         */
+        @Override
+        public int compareTo(Result other) {
+            return compareTo(other.score, other.message_id);
+        }
+
+        int compareTo(double otherScore, int otherId) {
+            int byScore = Double.compare(score, otherScore);
+            return byScore != 0 ? byScore : Integer.compare(message_id, otherId);
+        }
+    }
+
+    /**
+     * A max-heap of block numbers by bound and then by block number, so ranking many blocks and visiting few of them
+     * only costs building the heap.
+     */
+    private static class BlockQueue {
+        private final double[] bounds;
+        private final int[] heap;
+        private int size;
+
+        BlockQueue(double[] bounds) {
+            this.bounds = bounds;
+            heap = new int[bounds.length];
+            size = bounds.length;
+            for (int i = 0; i < size; i++) {
+                heap[i] = i;
+            }
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        /**
+         * @return the next block, or -1 if there are none left.
+         */
+        int poll() {
+            if (size == 0) {
+                return -1;
+            }
+            int head = heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+            return head;
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && before(heap[left], heap[largest])) {
+                    largest = left;
+                }
+                if (right < size && before(heap[right], heap[largest])) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                int swap = heap[i];
+                heap[i] = heap[largest];
+                heap[largest] = swap;
+                i = largest;
+            }
+        }
+
+        private boolean before(int a, int b) {
+            return bounds[a] > bounds[b] || (bounds[a] == bounds[b] && a > b);
+        }
+    }
+
+    private interface EntryConsumer {
+        void accept(int id, int generation, int count, int length);
+    }
+
+
+    private interface EntryFilter {
+        boolean keep(int id, int generation);
+    }
+
+    /**
+     * The posting list of one word: compressed blocks of entries in ascending id order, plus a small sorted side list
+     * of entries whose ids arrived out of order.
+     */
+    private static class Postings {
+        byte[] data = new byte[16];
+        int dataLength;
+        int[] blockFirstIds = new int[1];
+        int[] blockOffsets = new int[1];
+        int[] blockMaxCounts = new int[1];
+        int[] blockMinLengths = new int[1];
+        int blocks;
+        int inLastBlock;
+        int lastId = -1;
+
+        int[] pendingIds = new int[0];
+        int[] pendingGenerations = new int[0];
+        int[] pendingCounts = new int[0];
+        int[] pendingLengths = new int[0];
+        int pending;
+
+        /**
+         * Number of entries, stale ones included.
+         */
+        int size;
+        /**
+         * Highest count and shortest length among all entries.
+         */
+        int maxCount;
+        int minLength = Integer.MAX_VALUE;
+
+        void add(int id, int generation, int count, int length) {
+            size++;
+            maxCount = Math.max(maxCount, count);
+            minLength = Math.min(minLength, length);
+            if (id > lastId) {
+                append(id, generation, count, length);
+                return;
+            }
+            if (pending == pendingIds.length) {
+                int capacity = Math.max(4, pending * 2);
+                pendingIds = Arrays.copyOf(pendingIds, capacity);
+                pendingGenerations = Arrays.copyOf(pendingGenerations, capacity);
+                pendingCounts = Arrays.copyOf(pendingCounts, capacity);
+                pendingLengths = Arrays.copyOf(pendingLengths, capacity);
+            }
+            int at = pending;
+            while (at > 0 && pendingIds[at - 1] > id) {
+                pendingIds[at] = pendingIds[at - 1];
+                pendingGenerations[at] = pendingGenerations[at - 1];
+                pendingCounts[at] = pendingCounts[at - 1];
+                pendingLengths[at] = pendingLengths[at - 1];
+                at--;
+            }
+            pendingIds[at] = id;
+            pendingGenerations[at] = generation;
+            pendingCounts[at] = count;
+            pendingLengths[at] = length;
+            pending++;
+            if (pending > MAX_PENDING) {
+                compact((i, g) -> true);
+            }
+        }
+
+        private void append(int id, int generation, int count, int length) {
+            if (blocks == 0 || inLastBlock == BLOCK_SIZE) {
+                if (blocks == blockFirstIds.length) {
+                    blockFirstIds = Arrays.copyOf(blockFirstIds, blocks * 2);
+                    blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2);
+                    blockMaxCounts = Arrays.copyOf(blockMaxCounts, blocks * 2);
+                    blockMinLengths = Arrays.copyOf(blockMinLengths, blocks * 2);
+                }
+                blockFirstIds[blocks] = id;
+                blockOffsets[blocks] = dataLength;
+                blockMaxCounts[blocks] = 0;
+                blockMinLengths[blocks] = Integer.MAX_VALUE;
+                blocks++;
+                inLastBlock = 0;
+                writeVarint(0);
+            } else {
+                writeVarint(id - lastId);
+            }
+            writeVarint(generation);
+            writeVarint(count);
+            writeVarint(length);
+            blockMaxCounts[blocks - 1] = Math.max(blockMaxCounts[blocks - 1], count);
+            blockMinLengths[blocks - 1] = Math.min(blockMinLengths[blocks - 1], length);
+            inLastBlock++;
+            lastId = id;
+        }
+
+        /**
+         * @return the highest count among the entries with ids from minId to maxId, or 0 if there are none; an upper
+         *         bound, since it is taken from the blocks that overlap the range.
+         */
+        int maxCount(int minId, int maxId) {
+            int max = 0;
+            for (int i = 0; i < pending; i++) {
+                if (pendingIds[i] >= minId && pendingIds[i] <= maxId) {
+                    max = Math.max(max, pendingCounts[i]);
+                }
+            }
+            int block = Arrays.binarySearch(blockFirstIds, 0, blocks, minId);
+            block = block >= 0 ? block : Math.max(0, -block - 2);
+            for (; block < blocks && blockFirstIds[block] <= maxId; block++) {
+                if (blockMaxId(block) >= minId) {
+                    max = Math.max(max, blockMaxCounts[block]);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @return a cursor for looking up entries in ascending id order.
+         */
+        Cursor cursor() {
+            return new Cursor();
+        }
+
+        /**
+         * Pass every entry, stale ones included, to the consumer in ascending id order.
+         */
+        void forEach(EntryConsumer consumer) {
+            int next = 0;
+            int[] position = {0};
+            for (int block = 0; block < blocks; block++) {
+                int end = block + 1 < blocks ? blockOffsets[block + 1] : dataLength;
+                int current = blockFirstIds[block];
+                position[0] = blockOffsets[block];
+                boolean first = true;
+                while (position[0] < end) {
+                    int gap = readVarint(position);
+                    current = first ? current : current + gap;
+                    first = false;
+                    for (; next < pending && pendingIds[next] < current; next++) {
+                        consumer.accept(pendingIds[next], pendingGenerations[next], pendingCounts[next],
+                                pendingLengths[next]);
+                    }
+                    consumer.accept(current, readVarint(position), readVarint(position), readVarint(position));
+                }
+            }
+            for (; next < pending; next++) {
+                consumer.accept(pendingIds[next], pendingGenerations[next], pendingCounts[next], pendingLengths[next]);
+            }
+        }
+
+        /**
+         * Pass the entries of one block to the consumer in ascending id order.
+         */
+        void forEachInBlock(int block, EntryConsumer consumer) {
+            int end = block + 1 < blocks ? blockOffsets[block + 1] : dataLength;
+            int[] position = {blockOffsets[block]};
+            readVarint(position);
+            int current = blockFirstIds[block];
+            consumer.accept(current, readVarint(position), readVarint(position), readVarint(position));
+            while (position[0] < end) {
+                current += readVarint(position);
+                consumer.accept(current, readVarint(position), readVarint(position), readVarint(position));
+            }
+        }
+
+        /**
+         * Pass the entries of the side list to the consumer.
+         */
+        void forEachPending(EntryConsumer consumer) {
+            for (int i = 0; i < pending; i++) {
+                consumer.accept(pendingIds[i], pendingGenerations[i], pendingCounts[i], pendingLengths[i]);
+            }
+        }
+
+        /**
+         * @return the highest id a block can hold.
+         */
+        int blockMaxId(int block) {
+            return block + 1 < blocks ? blockFirstIds[block + 1] - 1 : lastId;
+        }
+
+        /**
+         * Looks up entries by id. It moves forward through the list from the last entry it found, skipping whole
+         * blocks by their first ids, so probing a list for ascending ids costs about one pass over it; a smaller id
+         * than the last one starts over from the block that holds it.
+         */
+        class Cursor {
+            private int block = -1;
+            private final int[] position = {0};
+            private int end;
+            private int id = -1;
+            private int generation;
+            private int count;
+            private int previousTarget = -1;
+
+            /**
+             * @return the count of the entry for the given id and generation, or 0 if there is none.
+             */
+            int count(int target, int targetGeneration) {
+                int found = Arrays.binarySearch(pendingIds, 0, pending, target);
+                if (found >= 0) {
+                    while (found > 0 && pendingIds[found - 1] == target) {
+                        found--;
+                    }
+                    for (int i = found; i < pending && pendingIds[i] == target; i++) {
+                        if (pendingGenerations[i] == targetGeneration) {
+                            return pendingCounts[i];
+                        }
+                    }
+                }
+                boolean backwards = target < previousTarget;
+                previousTarget = target;
+                if (backwards
+                        || (id < target && (block < 0 || (block + 1 < blocks && blockFirstIds[block + 1] <= target)))) {
+                    int next = Arrays.binarySearch(blockFirstIds, backwards ? 0 : Math.max(block, 0), blocks, target);
+                    next = next >= 0 ? next : -next - 2;
+                    if (next < 0) {
+                        block = -1;
+                        id = -1;
+                        return 0;
+                    }
+                    block = next;
+                    position[0] = blockOffsets[block];
+                    end = block + 1 < blocks ? blockOffsets[block + 1] : dataLength;
+                    readVarint(position);
+                    id = blockFirstIds[block];
+                    generation = readVarint(position);
+                    count = readVarint(position);
+                    readVarint(position);
+                }
+                while (id < target && position[0] < end) {
+                    id += readVarint(position);
+                    generation = readVarint(position);
+                    count = readVarint(position);
+                    readVarint(position);
+                }
+                return id == target && generation == targetGeneration ? count : 0;
+            }
+        }
+
+        /**
+         * Rewrite the list with the side list merged in, keeping only the entries the filter accepts.
+         */
+        void compact(EntryFilter filter) {
+            int total = size;
+            int[] ids = new int[total];
+            int[] entryGenerations = new int[total];
+            int[] counts = new int[total];
+            int[] entryLengths = new int[total];
+            int[] n = {0};
+            forEach((id, generation, count, length) -> {
+                if (filter.keep(id, generation)) {
+                    ids[n[0]] = id;
+                    entryGenerations[n[0]] = generation;
+                    counts[n[0]] = count;
+                    entryLengths[n[0]] = length;
+                    n[0]++;
+                }
+            });
+            Integer[] order = new Integer[n[0]];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> ids[a] != ids[b] ? Integer.compare(ids[a], ids[b])
+                    : Integer.compare(entryGenerations[b], entryGenerations[a]));
+            data = new byte[Math.max(16, dataLength)];
+            dataLength = 0;
+            blocks = 0;
+            inLastBlock = 0;
+            lastId = -1;
+            pending = 0;
+            size = 0;
+            maxCount = 0;
+            minLength = Integer.MAX_VALUE;
+            for (int i : order) {
+                // of two generations of one id (only kept by a filter that keeps everything) the older one is
+                // stale, and the newer one comes first
+                if (ids[i] == lastId) {
+                    continue;
+                }
+                size++;
+                maxCount = Math.max(maxCount, counts[i]);
+                minLength = Math.min(minLength, entryLengths[i]);
+                append(ids[i], entryGenerations[i], counts[i], entryLengths[i]);
+            }
+        }
+
+        private void writeVarint(int value) {
+            if (dataLength + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                data[dataLength++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[dataLength++] = (byte) value;
+        }
+
+        private int readVarint(int[] position) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position[0]++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import Model.Message;
+import Util.CacheStats;
+
+/**
+ * A cache of the newest messages of each account, for serving timeline reads without the database. Each cached
+ * account has a ring buffer of up to depth messages in newest-first order (time_posted_epoch descending, then
+ * message_id descending), which MessageService keeps current on every insert, update and delete, so new posts are
+ * added at the head in constant time. A timeline that holds every message of its account is marked complete and can
+ * also answer full reads; otherwise pages past the end of the buffer go to the database.
+ *
+ * A ring is only as large as the messages it holds (growing up to depth as messages are added), and memory is bounded
+ * by the total capacity of the rings plus one slot for every cached account, so empty timelines and loads in flight
+ * (e.g. of accounts that do not exist) are paid for too: once the total passes maxMessages, the least recently read
+ * or written accounts are evicted whole. Message objects are mutable, so copies are stored and handed out.
+ */
+public class TimelineCache {
+    /**
+     * Newest-first order of a timeline, the same as MessageDAO.getMessagesPostedByBefore.
+     */
+    private static final Comparator<Message> NEWEST_FIRST = Comparator.comparingLong(Message::getTime_posted_epoch)
+            .thenComparingInt(Message::getMessage_id).reversed();
+
+    /**
+     * Slots charged for a cached account on top of its ring's capacity.
+     */
+    private static final int ENTRY_SLOTS = 1;
+
+    /**
+     * The maximum number of messages cached per account.
+     */
+    private final int depth;
+    /**
+     * The maximum number of slots (ring capacity plus ENTRY_SLOTS per account) across all accounts.
+     */
+    private final int maxMessages;
+    /**
+     * Cached timelines by account_id, in least-recently-used order.
+     */
+    private final LinkedHashMap<Integer, Timeline> timelines = new LinkedHashMap<>(16, 0.75f, true);
+    private int cachedSlots;
+    private long loadTokens;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param depth the maximum number of messages cached per account.
+     * @param maxMessages the maximum number of slots across all accounts: one per message a ring can hold, and
+     * ENTRY_SLOTS per cached account.
+     */
+    public TimelineCache(int depth, int maxMessages) {
+        this.depth = depth;
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * @return the maximum number of messages cached per account.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @param account_id the id of the account that posted the messages.
+     * @param before_time the time_posted_epoch of the last message on the previous page.
+     * @param before_id the message_id of the last message on the previous page.
+     * @param limit the maximum number of messages to retrieve.
+     * @return copies of up to limit messages that come after the given cursor in newest-first order, or null if the
+     * account is not cached or the page reaches past the end of an incomplete timeline.
+     */
+    public synchronized List<Message> getPage(int account_id, long before_time, int before_id, int limit) {
+        Timeline timeline = timelines.get(account_id);
+        if (timeline == null || !timeline.loaded) {
+            misses.increment();
+            return null;
+        }
+        List<Message> page = new ArrayList<>(Math.min(limit, timeline.count));
+        for (int i = 0; i < timeline.count && page.size() < limit; i++) {
+            Message message = timeline.get(i);
+            if (message.getTime_posted_epoch() < before_time
+                    || (message.getTime_posted_epoch() == before_time && message.getMessage_id() < before_id)) {
+                page.add(copy(message));
+            }
+        }
+        if (page.size() < limit && !timeline.complete) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return page;
+    }
+
+    /**
+     * @param account_id the id of the account that posted the messages.
+     * @return copies of every message of the account in ascending message_id order, or null if the account is not
+     * cached or its timeline is incomplete.
+     */
+    public synchronized ArrayList<Message> getAll(int account_id) {
+        Timeline timeline = timelines.get(account_id);
+        if (timeline == null || !timeline.loaded || !timeline.complete) {
+            misses.increment();
+            return null;
+        }
+        ArrayList<Message> messages = new ArrayList<>(timeline.count);
+        for (int i = 0; i < timeline.count; i++) {
+            messages.add(copy(timeline.get(i)));
+        }
+        messages.sort(Comparator.comparingInt(Message::getMessage_id));
+        hits.increment();
+        return messages;
+    }
+
+    /**
+     * Reserve an uncached account for loading. The caller then reads its newest messages from the database and
+     * passes them to finishLoad with the returned token. A write to the account in between cancels the load, so a
+     * read that raced with a write can never install a stale timeline.
+     *
+     * @param account_id the id of the account to load.
+     * @return a load token, or 0 if the account is already cached or being loaded.
+     */
+    public synchronized long startLoad(int account_id) {
+        if (timelines.containsKey(account_id)) {
+            return 0;
+        }
+        Timeline timeline = new Timeline();
+        timeline.loadToken = ++loadTokens;
+        timelines.put(account_id, timeline);
+        cachedSlots += ENTRY_SLOTS;
+        evict();
+        return timeline.loadToken;
+    }
+
+    /**
+     * Give up a load reserved with startLoad, e.g. because reading the messages failed, so the account can be loaded
+     * again by the next read.
+     *
+     * @param account_id the id of the account that was being loaded.
+     * @param token the token returned by startLoad.
+     */
+    public synchronized void cancelLoad(int account_id, long token) {
+        Timeline timeline = timelines.get(account_id);
+        if (timeline != null && !timeline.loaded && timeline.loadToken == token) {
+            timelines.remove(account_id);
+            cachedSlots -= slots(timeline);
+        }
+    }
+
+    /**
+     * Install a timeline reserved with startLoad, unless a write to the account cancelled the load.
+     *
+     * @param account_id the id of the loaded account.
+     * @param token the token returned by startLoad.
+     * @param newest up to depth of the account's newest messages, in newest-first order.
+     * @param complete whether newest holds every message of the account.
+     */
+    public synchronized void finishLoad(int account_id, long token, List<Message> newest, boolean complete) {
+        Timeline timeline = timelines.get(account_id);
+        if (timeline == null || timeline.loaded || timeline.loadToken != token) {
+            return;
+        }
+        int count = Math.min(newest.size(), depth);
+        timeline.ring = new Message[count];
+        for (int i = 0; i < count; i++) {
+            timeline.ring[i] = copy(newest.get(i));
+        }
+        timeline.count = count;
+        timeline.complete = complete && newest.size() <= depth;
+        timeline.loaded = true;
+        cachedSlots += count;
+        evict();
+    }
+
+    /**
+     * Add a newly inserted message to its account's timeline, if it is cached. Adding a message that is already
+     * cached only replaces it.
+     *
+     * @param message the inserted message, including its message_id.
+     */
+    public synchronized void onInsert(Message message) {
+        Timeline timeline = writable(message.getPosted_by());
+        if (timeline == null) {
+            return;
+        }
+        int index = timeline.indexOf(message.getMessage_id());
+        if (index >= 0) {
+            timeline.set(index, copy(message));
+            return;
+        }
+        int position = 0;
+        while (position < timeline.count && NEWEST_FIRST.compare(timeline.get(position), message) < 0) {
+            position++;
+        }
+        if (position == timeline.count && !timeline.complete) {
+            // older than every cached message, so it belongs to the uncached part of the timeline
+            return;
+        }
+        if (timeline.count == depth) {
+            timeline.complete = false;
+            if (position == depth) {
+                return;
+            }
+            timeline.count--;
+        }
+        cachedSlots += timeline.grow(depth);
+        timeline.insert(position, copy(message));
+        evict();
+    }
+
+    /**
+     * Replace an updated message in its account's timeline, if it is cached.
+     *
+     * @param message the updated message.
+     */
+    public synchronized void onUpdate(Message message) {
+        Timeline timeline = writable(message.getPosted_by());
+        if (timeline == null) {
+            return;
+        }
+        int index = timeline.indexOf(message.getMessage_id());
+        if (index >= 0) {
+            timeline.set(index, copy(message));
+        }
+    }
+
+    /**
+     * Remove a deleted message from its account's timeline, if it is cached.
+     *
+     * @param message the deleted message.
+     */
+    public synchronized void onDelete(Message message) {
+        Timeline timeline = writable(message.getPosted_by());
+        if (timeline == null) {
+            return;
+        }
+        int index = timeline.indexOf(message.getMessage_id());
+        if (index >= 0) {
+            timeline.remove(index);
+        }
+    }
+
+    /**
+     * Drop every cached timeline.
+     */
+    public synchronized void clear() {
+        timelines.clear();
+        cachedSlots = 0;
+    }
+
+    /**
+     * @return a snapshot of the number of slots in use (see maxMessages) and the hit ratio of reads.
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(cachedSlots, maxMessages, hits.sum(), misses.sum());
+    }
+
+    /**
+     * @return the loaded timeline of the account, or null if there is none. A timeline still being loaded is
+     * dropped, which cancels its load.
+     */
+    private Timeline writable(int account_id) {
+        Timeline timeline = timelines.get(account_id);
+        if (timeline != null && !timeline.loaded) {
+            timelines.remove(account_id);
+            cachedSlots -= slots(timeline);
+            return null;
+        }
+        return timeline;
+    }
+
+    /**
+     * Evict least recently used timelines until the slots in use fit in maxMessages. Evicting a timeline that is
+     * still being loaded cancels its load.
+     */
+    private void evict() {
+        Iterator<Timeline> eldest = timelines.values().iterator();
+        while (cachedSlots > maxMessages && eldest.hasNext()) {
+            cachedSlots -= slots(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private static int slots(Timeline timeline) {
+        return ENTRY_SLOTS + timeline.ring.length;
+    }
+
+    private static Message copy(Message message) {
+        return new Message(message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+                message.getTime_posted_epoch());
+    }
+
+    /**
+     * The newest messages of one account in a ring buffer: the i-th newest message is at ring[(head + i) % length].
+     */
+    private static class Timeline {
+        private static final Message[] EMPTY = new Message[0];
+
+        Message[] ring = EMPTY;
+        int head;
+        int count;
+        boolean complete;
+        boolean loaded;
+        long loadToken;
+
+        Message get(int i) {
+            return ring[(head + i) % ring.length];
+        }
+
+        void set(int i, Message message) {
+            ring[(head + i) % ring.length] = message;
+        }
+
+        int indexOf(int message_id) {
+            for (int i = 0; i < count; i++) {
+                if (get(i).getMessage_id() == message_id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Make room for one more message if the ring is full, doubling it up to depth.
+         *
+         * @return the number of slots added.
+         */
+        int grow(int depth) {
+            if (count < ring.length || ring.length == depth) {
+                return 0;
+            }
+            Message[] larger = new Message[Math.min(depth, Math.max(4, ring.length * 2))];
+            for (int i = 0; i < count; i++) {
+                larger[i] = get(i);
+            }
+            int added = larger.length - ring.length;
+            ring = larger;
+            head = 0;
+            return added;
+        }
+
+        /**
+         * Insert at position i, shifting older messages back by one. Must not be full.
+         */
+        void insert(int i, Message message) {
+            if (i == 0) {
+                head = (head + ring.length - 1) % ring.length;
+            } else {
+                for (int j = count; j > i; j--) {
+                    set(j, get(j - 1));
+                }
+            }
+            set(i, message);
+            count++;
+        }
+
+        /**
+         * Remove position i, shifting older messages forward by one.
+         */
+        void remove(int i) {
+            for (int j = i; j < count - 1; j++) {
+                set(j, get(j + 1));
+            }
+            set(count - 1, null);
+            count--;
+        }
+    }
+}
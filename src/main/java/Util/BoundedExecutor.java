@@ -0,0 +1,95 @@
+package Util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A fixed number of daemon worker threads in front of a bounded queue, for running blocking work (e.g. JDBC calls)
+ * off the request threads. When the queue is full new work is rejected instead of queued, and the returned future
+ * fails with a RejectedExecutionException, so callers can shed load (e.g. with a 503) rather than build an unbounded
+ * backlog. Queue depth, active workers and rejections are exported as gauges on /metrics under the executor's name.
+ */
+public class BoundedExecutor implements AutoCloseable {
+
+	private final String name;
+	private final ThreadPoolExecutor executor;
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * @param name the executor's name, used for its thread names and as the executor label of its metrics.
+	 * @param threads the number of worker threads.
+	 * @param queueCapacity the maximum number of tasks waiting for a worker.
+	 */
+	public BoundedExecutor(String name, int threads, int queueCapacity) {
+		this.name = name;
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		String label = "{executor=\"" + name + "\"}";
+		Metrics.gauge("executor_queue_depth" + label, "Tasks waiting for a worker thread.", this::getQueueDepth);
+		Metrics.gauge("executor_active_threads" + label, "Worker threads running a task.", this::getActive);
+		Metrics.gauge("executor_rejected_total" + label, "Tasks rejected because the queue was full.", this::getRejected);
+	}
+
+	/**
+	 * Run the given work on a worker thread.
+	 *
+	 * @param work the blocking work to run.
+	 * @return CompletableFuture<T> completes with the work's result, or exceptionally with what it threw, or with a
+	 * RejectedExecutionException if the queue was full.
+	 */
+	public <T> CompletableFuture<T> supply(Supplier<T> work) {
+		try {
+			return CompletableFuture.supplyAsync(work, executor);
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * @return the executor's name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of tasks waiting for a worker.
+	 */
+	public long getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return the number of workers running a task.
+	 */
+	public long getActive() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * @return the number of tasks rejected so far.
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Stop accepting work. Tasks already queued still run.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+}
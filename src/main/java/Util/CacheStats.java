@@ -0,0 +1,65 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of an in-process cache's size and effectiveness.
+ */
+public class CacheStats {
+	/**
+	 * number of entries currently cached.
+	 */
+	private int size;
+	/**
+	 * the maximum number of entries the cache will hold.
+	 */
+	private int max_size;
+	/**
+	 * number of lookups served from the cache.
+	 */
+	private long hits;
+	/**
+	 * number of lookups that had to go to the database.
+	 */
+	private long misses;
+
+	public CacheStats(int size, int max_size, long hits, long misses) {
+		this.size = size;
+		this.max_size = max_size;
+		this.hits = hits;
+		this.misses = misses;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getMax_size() {
+		return max_size;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the fraction of lookups served from the cache, or 0 if there have been none.
+	 */
+	public double getHit_ratio() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats{" +
+				"size=" + size +
+				", max_size=" + max_size +
+				", hits=" + hits +
+				", misses=" + misses +
+				", hit_ratio=" + getHit_ratio() +
+				'}';
+	}
+}
@@ -0,0 +1,93 @@
+package Util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds how many requests run at once. When request threads are cheap (e.g. virtual threads) nothing else stops
+ * thousands of them from queueing on the ConnectionPool and timing out together; the limiter lets at most
+ * maxConcurrent through, makes the rest wait up to a short timeout in arrival order, and rejects what is left so the
+ * caller can answer 503 straight away.
+ */
+public class ConcurrencyLimiter {
+
+	/**
+	 * Maximum number of requests allowed to run at once.
+	 */
+	private final int maxConcurrent;
+	/**
+	 * How long a request waits for a permit before it is rejected, in milliseconds.
+	 */
+	private final long timeoutMillis;
+	/**
+	 * One permit per request that may run. Fair, so waiters are served in arrival order.
+	 */
+	private final Semaphore permits;
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * @param maxConcurrent the maximum number of requests allowed to run at once.
+	 * @param timeoutMillis how long a request waits for a permit before it is rejected.
+	 */
+	public ConcurrencyLimiter(int maxConcurrent, long timeoutMillis) {
+		if (maxConcurrent < 1) {
+			throw new IllegalArgumentException("maxConcurrent must be at least 1");
+		}
+		this.maxConcurrent = maxConcurrent;
+		this.timeoutMillis = timeoutMillis;
+		this.permits = new Semaphore(maxConcurrent, true);
+	}
+
+	/**
+	 * Wait up to the timeout for a permit. Every successful call must be paired with a call to release().
+	 *
+	 * @return true if a permit was acquired, false if the request should be rejected.
+	 */
+	public boolean tryAcquire() {
+		try {
+			if (permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		rejected.increment();
+		return false;
+	}
+
+	/**
+	 * Return a permit acquired with tryAcquire().
+	 */
+	public void release() {
+		permits.release();
+	}
+
+	/**
+	 * @return the maximum number of requests allowed to run at once.
+	 */
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/**
+	 * @return the number of requests currently running.
+	 */
+	public int getActive() {
+		return maxConcurrent - permits.availablePermits();
+	}
+
+	/**
+	 * @return an estimate of the number of requests waiting for a permit.
+	 */
+	public int getWaiters() {
+		return permits.getQueueLength();
+	}
+
+	/**
+	 * @return the number of requests rejected so far.
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+}
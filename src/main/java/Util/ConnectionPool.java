@@ -0,0 +1,389 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of JDBC connections. At most maxSize physical connections are open at once; callers that find the
+ * pool exhausted wait up to the acquire timeout before getting an SQLTransientConnectionException. Connections handed
+ * out are proxies whose close() returns the physical connection to the pool, so DAOs should always close them (e.g.
+ * with try-with-resources). A background sweeper closes connections that sat idle longer than the idle timeout and
+ * counts and logs connections that were held longer than the leak threshold. Only with traceLeaks is the stack trace
+ * of where each connection was acquired recorded and logged with the report, since that trace is taken on every
+ * acquire. Each physical connection keeps an LRU StatementCache, so prepareStatement() on a SQL string the
+ * connection has already seen reuses the open statement instead of parsing and planning it again.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+	/**
+	 * The DataSource used to open new physical connections.
+	 */
+	private final DataSource dataSource;
+	/**
+	 * Maximum number of physical connections, idle or in use.
+	 */
+	private final int maxSize;
+	/**
+	 * How long getConnection() waits for a free connection, in milliseconds.
+	 */
+	private final long acquireTimeoutMillis;
+	/**
+	 * How long a connection may sit idle before it is closed, in milliseconds.
+	 */
+	private final long idleTimeoutMillis;
+	/**
+	 * How long a connection may be held before it is reported as a possible leak, in milliseconds (0 disables).
+	 */
+	private final long leakThresholdMillis;
+	/**
+	 * Whether the stack trace of every acquire is recorded, to show where a leaked connection was acquired.
+	 */
+	private final boolean traceLeaks;
+	/**
+	 * Maximum number of prepared statements cached per connection (0 disables the cache).
+	 */
+	private final int statementCacheSize;
+
+	/**
+	 * One permit per connection that may be handed out. Fair, so waiters are served in arrival order.
+	 */
+	private final Semaphore permits;
+	/**
+	 * Idle physical connections, most recently returned first so warm connections are reused.
+	 */
+	private final Deque<PooledConnection> idle = new ArrayDeque<>();
+	/**
+	 * Connections currently handed out to callers.
+	 */
+	private final Set<PooledConnection> leased = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService sweeper;
+	private volatile boolean closed;
+
+	private final LongAdder acquireCount = new LongAdder();
+	private final LongAdder acquireNanos = new LongAdder();
+	private final AtomicLong maxAcquireNanos = new AtomicLong();
+	private final LongAdder timeoutCount = new LongAdder();
+	private final LongAdder leakCount = new LongAdder();
+	private final LongAdder statementCacheHits = new LongAdder();
+	private final LongAdder statementCacheMisses = new LongAdder();
+
+	/**
+	 * @param dataSource the DataSource used to open new physical connections.
+	 * @param maxSize the maximum number of physical connections.
+	 * @param acquireTimeoutMillis how long getConnection() waits for a free connection.
+	 * @param idleTimeoutMillis how long a connection may sit idle before it is closed.
+	 * @param leakThresholdMillis how long a connection may be held before it is reported as a leak (0 disables).
+	 * @param traceLeaks whether to record where each connection was acquired, for the leak reports.
+	 * @param statementCacheSize the maximum number of prepared statements cached per connection (0 disables).
+	 */
+	public ConnectionPool(DataSource dataSource, int maxSize, long acquireTimeoutMillis, long idleTimeoutMillis,
+			long leakThresholdMillis, boolean traceLeaks, int statementCacheSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be at least 1");
+		}
+		this.dataSource = dataSource;
+		this.maxSize = maxSize;
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.leakThresholdMillis = leakThresholdMillis;
+		this.traceLeaks = traceLeaks;
+		this.statementCacheSize = statementCacheSize;
+		this.permits = new Semaphore(maxSize, true);
+		this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "connection-pool-sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(100, Math.min(idleTimeoutMillis,
+				leakThresholdMillis > 0 ? leakThresholdMillis : idleTimeoutMillis) / 2);
+		sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Borrow a connection from the pool, opening a new one if none is idle and the pool is not full.
+	 *
+	 * @return a connection that is returned to the pool when it is closed.
+	 * @throws SQLException if no connection became free within the acquire timeout, or a new one could not be opened.
+	 */
+	public Connection getConnection() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+		long start = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				timeoutCount.increment();
+				throw new SQLTransientConnectionException("Timed out after " + acquireTimeoutMillis
+						+ "ms waiting for a connection (" + maxSize + " in use)");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+		}
+		PooledConnection pooled;
+		try {
+			pooled = takeIdle();
+			if (pooled == null) {
+				pooled = new PooledConnection(dataSource.getConnection());
+			}
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+		pooled.lease(leakThresholdMillis > 0 && traceLeaks ? new Throwable("Connection acquired here") : null);
+		leased.add(pooled);
+		long elapsed = System.nanoTime() - start;
+		acquireCount.increment();
+		acquireNanos.add(elapsed);
+		maxAcquireNanos.accumulateAndGet(elapsed, Math::max);
+		return pooled.newHandle();
+	}
+
+	/**
+	 * @return a snapshot of the pool's current usage, acquire latency and statement cache effectiveness.
+	 */
+	public PoolStats getStats() {
+		int idleSize;
+		synchronized (idle) {
+			idleSize = idle.size();
+		}
+		long acquires = acquireCount.sum();
+		return new PoolStats(maxSize, leased.size(), idleSize, permits.getQueueLength(), acquires,
+				acquires == 0 ? 0 : acquireNanos.sum() / acquires, maxAcquireNanos.get(), timeoutCount.sum(),
+				leakCount.sum(), statementCacheHits.sum(), statementCacheMisses.sum());
+	}
+
+	/**
+	 * Close every idle connection and stop the sweeper. Connections still in use are closed when they are returned.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		sweeper.shutdownNow();
+		synchronized (idle) {
+			for (PooledConnection pooled : idle) {
+				pooled.closePhysical();
+			}
+			idle.clear();
+		}
+	}
+
+	/**
+	 * @return the most recently used idle connection that is still open, or null if there is none.
+	 */
+	private PooledConnection takeIdle() {
+		while (true) {
+			PooledConnection pooled;
+			synchronized (idle) {
+				pooled = idle.pollFirst();
+			}
+			if (pooled == null || pooled.isPhysicalOpen()) {
+				return pooled;
+			}
+		}
+	}
+
+	/**
+	 * Return a connection to the pool once its handle has been closed. Connections left in a transaction are rolled
+	 * back; connections that are broken or returned after the pool was closed are discarded.
+	 */
+	private void release(PooledConnection pooled) {
+		leased.remove(pooled);
+		try {
+			if (!closed && pooled.reset()) {
+				synchronized (idle) {
+					idle.addFirst(pooled);
+				}
+			} else {
+				pooled.closePhysical();
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Close connections idle for longer than the idle timeout and report connections held past the leak threshold.
+	 */
+	private void sweep() {
+		long now = System.nanoTime();
+		synchronized (idle) {
+			Iterator<PooledConnection> it = idle.iterator();
+			while (it.hasNext()) {
+				PooledConnection pooled = it.next();
+				if (now - pooled.returnedAt > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis)) {
+					it.remove();
+					pooled.closePhysical();
+				}
+			}
+		}
+		if (leakThresholdMillis > 0) {
+			for (PooledConnection pooled : leased) {
+				if (!pooled.leakReported
+						&& now - pooled.acquiredAt > TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis)) {
+					pooled.leakReported = true;
+					leakCount.increment();
+					Throwable site = pooled.acquireSite;
+					if (site != null) {
+						LOGGER.warn("Possible connection leak: held for more than {}ms", leakThresholdMillis, site);
+					} else {
+						LOGGER.warn("Possible connection leak: held for more than {}ms "
+								+ "(set pool.traceLeaks to log where it was acquired)", leakThresholdMillis);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * A physical connection owned by the pool, along with the bookkeeping for its current lease.
+	 */
+	private final class PooledConnection {
+		private final Connection physical;
+		/**
+		 * Prepared statements kept open on this connection, or null if statement caching is disabled.
+		 */
+		private final StatementCache statementCache;
+		private volatile long acquiredAt;
+		private volatile long returnedAt;
+		private volatile Throwable acquireSite;
+		private volatile boolean leakReported;
+
+		PooledConnection(Connection physical) {
+			this.physical = physical;
+			this.statementCache = statementCacheSize > 0
+					? new StatementCache(physical, statementCacheSize, statementCacheHits, statementCacheMisses)
+					: null;
+		}
+
+		void lease(Throwable site) {
+			acquiredAt = System.nanoTime();
+			acquireSite = site;
+			leakReported = false;
+		}
+
+		/**
+		 * @return a new Connection proxy for this lease; closing it (once) returns this connection to the pool.
+		 */
+		Connection newHandle() {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new Handle(this));
+		}
+
+		/**
+		 * Undo anything the last borrower left behind.
+		 *
+		 * @return true if the connection is fit to be reused.
+		 */
+		boolean reset() {
+			try {
+				if (physical.isClosed()) {
+					return false;
+				}
+				if (statementCache != null) {
+					statementCache.releaseAll();
+				}
+				if (!physical.getAutoCommit()) {
+					physical.rollback();
+					physical.setAutoCommit(true);
+				}
+				returnedAt = System.nanoTime();
+				acquireSite = null;
+				return true;
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+
+		boolean isPhysicalOpen() {
+			try {
+				return !physical.isClosed();
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+
+		void closePhysical() {
+			if (statementCache != null) {
+				statementCache.closeAll();
+			}
+			try {
+				physical.close();
+			} catch (SQLException e) {
+				LOGGER.warn("Could not close a pooled connection", e);
+			}
+		}
+	}
+
+	/**
+	 * Forwards every call to the physical connection, except close() which returns it to the pool instead, and
+	 * prepareStatement() which goes through the connection's statement cache.
+	 */
+	private final class Handle implements InvocationHandler {
+		private PooledConnection pooled;
+
+		Handle(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					synchronized (this) {
+						if (pooled != null) {
+							PooledConnection returned = pooled;
+							pooled = null;
+							release(returned);
+						}
+					}
+					return null;
+				case "isClosed":
+					return pooled == null;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "PooledConnection[" + (pooled == null ? "closed" : pooled.physical) + "]";
+				default:
+					PooledConnection current = pooled;
+					if (current == null) {
+						throw new SQLException("Connection has been returned to the pool");
+					}
+					if (current.statementCache != null && StatementCache.isCacheable(method)) {
+						return current.statementCache.prepare((Connection) proxy, (String) args[0],
+								StatementCache.autoGeneratedKeys(args));
+					}
+					try {
+						return method.invoke(current.physical, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+			}
+		}
+	}
+}
@@ -1,9 +1,13 @@
 package Util;
 
-import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.h2.jdbcx.JdbcDataSource;
 import org.h2.tools.RunScript;
@@ -13,7 +17,11 @@ import org.h2.tools.RunScript;
  * our database. This class utilizes the singleton design pattern. We will be
  * utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * Connections are borrowed from a bounded ConnectionPool and must be closed by
+ * the caller (e.g. with try-with-resources) to return them to the pool. The pool
+ * can be sized with the pool.maxSize, pool.acquireTimeoutMillis,
+ * pool.idleTimeoutMillis, pool.leakThresholdMillis, pool.traceLeaks and
+ * pool.statementCacheSize system properties.
  */
 public class ConnectionUtil {
 
@@ -32,43 +40,121 @@ public class ConnectionUtil {
 	private static String password = "sa";
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
+	 * Maximum number of open connections in the pool
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static int maxPoolSize = Integer.getInteger("pool.maxSize", 10);
+	/**
+	 * How long to wait for a free connection before giving up, in milliseconds
+	 */
+	private static long acquireTimeoutMillis = Long.getLong("pool.acquireTimeoutMillis", 5000);
+	/**
+	 * How long an unused connection stays open in the pool, in milliseconds
+	 */
+	private static long idleTimeoutMillis = Long.getLong("pool.idleTimeoutMillis", 60000);
+	/**
+	 * How long a connection may be held before it is reported as a possible leak, in milliseconds (0 disables)
+	 */
+	private static long leakThresholdMillis = Long.getLong("pool.leakThresholdMillis", 30000);
+	/**
+	 * Whether leak reports include where the connection was acquired. Off by default, since it records a stack
+	 * trace on every acquire
+	 */
+	private static boolean traceLeaks = Boolean.getBoolean("pool.traceLeaks");
+	/**
+	 * Maximum number of prepared statements kept open per pooled connection
+	 */
+	private static int statementCacheSize = Integer.getInteger("pool.statementCacheSize", 32);
 
 	/**
-	 * static initialization block to establish credentials for DataSoure Pool
+	 * DataSource used by the pool to open new physical connections.
+	 */
+	private static JdbcDataSource dataSource = new JdbcDataSource();
+
+	/**
+	 * Bounded pool that hands out connections and takes them back when they are closed.
+	 */
+	private static ConnectionPool pool;
+
+	/**
+	 * Callbacks run after the database is reset, so in-process caches can drop rows that no longer exist.
+	 */
+	private static List<Runnable> resetListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * static initialization block to establish credentials for the DataSource and create the pool
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		dataSource.setURL(url);
+		dataSource.setUser(username);
+		dataSource.setPassword(password);
+		pool = new ConnectionPool(dataSource, maxPoolSize, acquireTimeoutMillis, idleTimeoutMillis,
+				leakThresholdMillis, traceLeaks, statementCacheSize);
 	}
 
 	/**
-	 * @return an active connection to the database
+	 * @return an active connection to the database, which is returned to the pool when closed
+	 * @throws PoolExhaustedException if no connection became free within the acquire timeout
+	 * @throws IllegalStateException if a new connection could not be opened
 	 */
 	public static Connection getConnection() {
 		try {
 			return pool.getConnection();
+		} catch (SQLTransientConnectionException e) {
+			throw new PoolExhaustedException(e);
 		} catch (SQLException e) {
-			e.printStackTrace();
+			throw new IllegalStateException("Could not open a database connection", e);
 		}
+	}
 
-		return null;
+	/**
+	 * @return a snapshot of the connection pool's usage (active, idle, waiters, acquire latency and statement cache hits)
+	 */
+	public static PoolStats getPoolStats() {
+		return pool.getStats();
+	}
+
+	/**
+	 * Bring the database schema up to date by running any pending migration scripts.
+	 * This should be called once at startup, before the API serves requests.
+	 *
+	 * @throws IllegalStateException if a migration fails, so startup stops instead of running on an old schema
+	 */
+	public static void migrate() {
+		try (Connection connection = getConnection()) {
+			SchemaMigrator.migrate(connection);
+		} catch (SQLException e) {
+			throw new IllegalStateException("Database migration failed", e);
+		}
 	}
 
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
-	 * tables to keep it consistent across all tests. The method will read the sql
-	 * file in resources. This will be performed before every test.
+	 * tables to keep it consistent across all tests. Every object is dropped, the
+	 * schema is rebuilt from the migration scripts, and the test data in the
+	 * SocialMedia.sql file in resources is loaded. This will be performed before
+	 * every test. Any registered reset listeners are run afterwards.
 	 */
 	public static void resetTestDatabase() {
-		try {
-			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
-		} catch (SQLException | FileNotFoundException e) {
+		try (Connection connection = getConnection();
+				Statement statement = connection.createStatement();
+				FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql")) {
+			statement.execute("drop all objects");
+			SchemaMigrator.migrate(connection);
+			RunScript.execute(connection, sqlReader);
+		} catch (SQLException | IOException e) {
 			e.printStackTrace();
 		}
+		for (Runnable listener : resetListeners) {
+			listener.run();
+		}
+	}
+
+	/**
+	 * Register a callback to run every time the database is reset (used by caches holding database rows).
+	 *
+	 * @param listener the callback to run after each reset
+	 */
+	public static void addResetListener(Runnable listener) {
+		resetListeners.add(listener);
 	}
 }
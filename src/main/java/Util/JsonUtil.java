@@ -0,0 +1,27 @@
+package Util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import Model.Account;
+import Model.Message;
+
+/**
+ * The JsonUtil class holds the one ObjectMapper shared by the whole application, along with readers and writers
+ * pre-built from it for the types parsed and written on every request. ObjectMapper, ObjectReader and ObjectWriter
+ * are thread-safe once configured, and sharing them means introspection and serializer lookup happen once instead
+ * of on every request.
+ */
+public class JsonUtil {
+
+	/**
+	 * The shared mapper. Also registered as Javalin's JSON mapper, so ctx.json() uses the same warmed-up caches.
+	 */
+	public static final ObjectMapper MAPPER = new ObjectMapper();
+
+	public static final ObjectReader ACCOUNT_READER = MAPPER.readerFor(Account.class);
+	public static final ObjectWriter ACCOUNT_WRITER = MAPPER.writerFor(Account.class);
+	public static final ObjectReader MESSAGE_READER = MAPPER.readerFor(Message.class);
+	public static final ObjectWriter MESSAGE_WRITER = MAPPER.writerFor(Message.class);
+}
@@ -0,0 +1,105 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds with HDR-style log-linear buckets: every power of two is split
+ * into SUB_BUCKETS / 2 equal buckets, so any recorded value is reported within about 6% of its true value, over the
+ * full range of a long, in a fixed array of under 1000 counters. Recording is one array increment and two LongAdder
+ * additions, so it can sit on every request and query.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of exact buckets for the smallest values; also twice the number of buckets per power of two above them.
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+	private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+
+	/**
+	 * @param nanos a duration in nanoseconds; negative values are recorded as 0.
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+	}
+
+	/**
+	 * @return the number of recorded values.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the sum of recorded values, in nanoseconds.
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * Estimate the value below which the given fraction of recorded values fall. Values recorded concurrently with
+	 * this call may or may not be counted.
+	 *
+	 * @param quantile a fraction between 0 and 1, e.g. 0.99 for p99.
+	 * @return the upper bound of the bucket containing the quantile, in nanoseconds, or 0 if nothing was recorded.
+	 */
+	public long getValueAtQuantile(double quantile) {
+		long total = 0;
+		long[] snapshot = new long[counts.length()];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return upperBoundOf(i);
+			}
+		}
+		return upperBoundOf(snapshot.length - 1);
+	}
+
+	/**
+	 * Values below SUB_BUCKETS get a bucket each. Above that, a value whose highest set bit is msb is shifted right
+	 * by msb - (SUB_BUCKET_BITS - 1), leaving its top SUB_BUCKET_BITS bits, whose lower half picks the bucket within
+	 * that power of two.
+	 */
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int shift = msb - (SUB_BUCKET_BITS - 1);
+		int top = (int) (value >>> shift);
+		return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (top - HALF_SUB_BUCKETS);
+	}
+
+	/**
+	 * @return the largest value that falls in the given bucket.
+	 */
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int offset = bucket - SUB_BUCKETS;
+		int shift = offset / HALF_SUB_BUCKETS + 1;
+		long top = offset % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+		long upper = ((top + 1) << shift) - 1;
+		return upper < 0 ? Long.MAX_VALUE : upper;
+	}
+}
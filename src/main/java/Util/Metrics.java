@@ -0,0 +1,266 @@
+package Util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The Metrics class is the registry of request and query timers for the whole application, and renders them in the
+ * Prometheus text exposition format. Timers are created once and then only record into lock-free counters and a
+ * LatencyHistogram, so recording costs a few atomic increments.
+ */
+public class Metrics {
+
+	/**
+	 * Quantiles reported for every histogram.
+	 */
+	private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+	/**
+	 * Highest status code counted separately; any other status is counted as 0.
+	 */
+	private static final int MAX_STATUS = 599;
+
+	/**
+	 * Request metrics by method, then by route, e.g. "GET" then "messages/{message_id}". Both keys are strings the
+	 * caller already holds, so recording a request looks them up without building a key.
+	 */
+	private static final ConcurrentMap<String, ConcurrentMap<String, RouteMetrics>> requestMetrics = new ConcurrentHashMap<>();
+	/**
+	 * Query timers by "DAO.method", e.g. "MessageDAO.getMessageById".
+	 */
+	private static final ConcurrentMap<String, Timer> queryTimers = new ConcurrentHashMap<>();
+	/**
+	 * Gauges registered by other components, by metric name.
+	 */
+	private static final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+	/**
+	 * Record one handled HTTP request.
+	 *
+	 * @param method the HTTP method.
+	 * @param route the route pattern that matched, e.g. messages/{message_id}.
+	 * @param status the response status code.
+	 * @param nanos how long the request took.
+	 */
+	public static void recordRequest(String method, String route, int status, long nanos) {
+		ConcurrentMap<String, RouteMetrics> routes = requestMetrics.get(method);
+		if (routes == null) {
+			routes = requestMetrics.computeIfAbsent(method, k -> new ConcurrentHashMap<>());
+		}
+		RouteMetrics metrics = routes.get(route);
+		if (metrics == null) {
+			metrics = routes.computeIfAbsent(route, k -> new RouteMetrics());
+		}
+		metrics.timer.record(nanos);
+		metrics.count(status).increment();
+	}
+
+	/**
+	 * @param name the DAO and method the timer measures, e.g. "MessageDAO.getMessageById".
+	 * @return the query timer with the given name, created on first use. Callers keep it in a static field.
+	 */
+	public static Timer queryTimer(String name) {
+		return queryTimers.computeIfAbsent(name, k -> new Timer());
+	}
+
+	/**
+	 * Register a value to be read every time the metrics are rendered. Registering a name again replaces the earlier
+	 * gauge, so a component that is recreated (e.g. by a restarted app) reports its newest instance.
+	 *
+	 * @param name the metric name, optionally followed by its labels, e.g. "executor_queue_depth{executor=\"db\"}".
+	 * @param help a one-line description of the metric.
+	 * @param value reads the current value.
+	 */
+	public static void gauge(String name, String help, LongSupplier value) {
+		gauges.put(name, new Gauge(help, value));
+	}
+
+	/**
+	 * @return every metric in the Prometheus text exposition format (version 0.0.4).
+	 */
+	public static String toPrometheusText() {
+		StringBuilder out = new StringBuilder();
+
+		out.append("# HELP http_requests_total Requests handled, by route and status.\n");
+		out.append("# TYPE http_requests_total counter\n");
+		for (Map.Entry<String, ConcurrentMap<String, RouteMetrics>> method : new TreeMap<>(requestMetrics).entrySet()) {
+			for (Map.Entry<String, RouteMetrics> route : new TreeMap<>(method.getValue()).entrySet()) {
+				AtomicReferenceArray<LongAdder> counts = route.getValue().counts;
+				for (int status = 0; status <= MAX_STATUS; status++) {
+					LongAdder count = counts.get(status);
+					if (count != null) {
+						out.append("http_requests_total{method=\"").append(method.getKey()).append("\",route=\"")
+								.append(escape(route.getKey())).append("\",status=\"").append(status).append("\"} ")
+								.append(count.sum()).append('\n');
+					}
+				}
+			}
+		}
+
+		out.append("# HELP http_request_duration_seconds Request latency, by route.\n");
+		out.append("# TYPE http_request_duration_seconds summary\n");
+		for (Map.Entry<String, ConcurrentMap<String, RouteMetrics>> method : new TreeMap<>(requestMetrics).entrySet()) {
+			for (Map.Entry<String, RouteMetrics> route : new TreeMap<>(method.getValue()).entrySet()) {
+				appendSummary(out, "http_request_duration_seconds",
+						"method=\"" + method.getKey() + "\",route=\"" + escape(route.getKey()) + "\"",
+						route.getValue().timer.histogram);
+			}
+		}
+
+		out.append("# HELP dao_query_duration_seconds Database query latency, by DAO method.\n");
+		out.append("# TYPE dao_query_duration_seconds summary\n");
+		for (Map.Entry<String, Timer> entry : new TreeMap<>(queryTimers).entrySet()) {
+			appendSummary(out, "dao_query_duration_seconds", "query=\"" + entry.getKey() + "\"",
+					entry.getValue().histogram);
+		}
+
+		out.append("# HELP dao_query_errors_total Database queries that failed with an SQLException, by DAO method.\n");
+		out.append("# TYPE dao_query_errors_total counter\n");
+		for (Map.Entry<String, Timer> entry : new TreeMap<>(queryTimers).entrySet()) {
+			out.append("dao_query_errors_total{query=\"").append(entry.getKey()).append("\"} ")
+					.append(entry.getValue().errors.sum()).append('\n');
+		}
+
+		PoolStats pool = ConnectionUtil.getPoolStats();
+		appendGauge(out, "db_pool_active_connections", "Connections currently handed out.", pool.getActive());
+		appendGauge(out, "db_pool_idle_connections", "Open connections waiting to be reused.", pool.getIdle());
+		appendGauge(out, "db_pool_waiters", "Threads waiting for a connection.", pool.getWaiters());
+		appendGauge(out, "db_pool_max_connections", "Maximum number of connections.", pool.getMax_size());
+		String family = null;
+		for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+			String name = entry.getKey();
+			int labels = name.indexOf('{');
+			String entryFamily = labels < 0 ? name : name.substring(0, labels);
+			if (!entryFamily.equals(family)) {
+				family = entryFamily;
+				out.append("# HELP ").append(family).append(' ').append(entry.getValue().help).append('\n');
+				out.append("# TYPE ").append(family).append(" gauge\n");
+			}
+			out.append(name).append(' ').append(entry.getValue().value.getAsLong()).append('\n');
+		}
+		return out.toString();
+	}
+
+	private static void appendSummary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+		for (double quantile : QUANTILES) {
+			out.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+					.append(seconds(histogram.getValueAtQuantile(quantile))).append('\n');
+		}
+		out.append(name).append("_sum{").append(labels).append("} ").append(seconds(histogram.getSum())).append('\n');
+		out.append(name).append("_count{").append(labels).append("} ").append(histogram.getCount()).append('\n');
+	}
+
+	private static void appendGauge(StringBuilder out, String name, String help, long value) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(" gauge\n");
+		out.append(name).append(' ').append(value).append('\n');
+	}
+
+	private static String seconds(long nanos) {
+		return Double.toString(nanos / 1e9);
+	}
+
+	private static String escape(String label) {
+		return label.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	/**
+	 * Times one kind of operation and counts its errors.
+	 */
+	public static class Timer {
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		private final LongAdder errors = new LongAdder();
+
+		/**
+		 * @param nanos the duration of one operation.
+		 */
+		public void record(long nanos) {
+			histogram.record(nanos);
+		}
+
+		/**
+		 * Count one failed operation. Its duration is still recorded when its Sample is closed.
+		 */
+		public void recordError() {
+			errors.increment();
+		}
+
+		/**
+		 * Start timing one operation. Meant to be the first resource of a try-with-resources block, so the duration
+		 * is recorded when the block exits however it exits.
+		 *
+		 * @return a Sample that records the elapsed time into this timer when closed.
+		 */
+		public Sample start() {
+			return new Sample(this, System.nanoTime());
+		}
+
+		/**
+		 * @return the latency histogram of this timer.
+		 */
+		public LatencyHistogram getHistogram() {
+			return histogram;
+		}
+
+		/**
+		 * @return the number of failed operations.
+		 */
+		public long getErrors() {
+			return errors.sum();
+		}
+	}
+
+	/**
+	 * The latency of one method and route, and its request counts indexed by status code.
+	 */
+	private static class RouteMetrics {
+		private final Timer timer = new Timer();
+		private final AtomicReferenceArray<LongAdder> counts = new AtomicReferenceArray<>(MAX_STATUS + 1);
+
+		/**
+		 * @return the counter of the given status, created on first use.
+		 */
+		LongAdder count(int status) {
+			int index = status > 0 && status <= MAX_STATUS ? status : 0;
+			LongAdder count = counts.get(index);
+			if (count == null) {
+				counts.compareAndSet(index, null, new LongAdder());
+				count = counts.get(index);
+			}
+			return count;
+		}
+	}
+
+	private static class Gauge {
+		private final String help;
+		private final LongSupplier value;
+
+		Gauge(String help, LongSupplier value) {
+			this.help = help;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * One timed operation in progress.
+	 */
+	public static class Sample implements AutoCloseable {
+		private final Timer timer;
+		private final long start;
+
+		Sample(Timer timer, long start) {
+			this.timer = timer;
+			this.start = start;
+		}
+
+		@Override
+		public void close() {
+			timer.record(System.nanoTime() - start);
+		}
+	}
+}
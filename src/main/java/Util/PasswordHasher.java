@@ -0,0 +1,194 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Salted, deliberately slow password hashes: PBKDF2 with HMAC-SHA256, a random 16-byte salt per password and a
+ * tunable number of iterations (the work factor). A hash is stored as "pbkdf2-sha256$iterations$salt$hash", with the
+ * salt and hash in base64, so it carries its own work factor and raising the factor leaves older hashes verifiable
+ * until they are replaced (see needsRehash).
+ *
+ * Verification compares in constant time, and checking a password against no hash at all (an unknown username)
+ * costs the same as checking it against a real one, so response times do not tell which usernames exist. Stored
+ * values without the hash prefix are taken to be plaintext passwords from before hashing, and are compared directly
+ * so they can be replaced by a hash on the account's next login.
+ *
+ * The hashes that were recently verified are remembered, up to maxVerified of them, along with an HMAC of the
+ * password that matched them under a key that only lives in this process, so repeated logins with the right password
+ * skip the slow hash. A wrong password always pays the full cost.
+ */
+public class PasswordHasher {
+
+	private static final String PREFIX = "pbkdf2-sha256$";
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final int SALT_BYTES = 16;
+	private static final int HASH_BYTES = 32;
+
+	private final int iterations;
+	private final int maxVerified;
+	private final SecureRandom random = new SecureRandom();
+	private final byte[] verifiedKey = new byte[32];
+	/**
+	 * HMAC of the password that matched each recently verified hash, in least-recently-used order.
+	 */
+	private final LinkedHashMap<String, byte[]> verified;
+	/**
+	 * Hash of a random password, verified against when there is no stored hash.
+	 */
+	private final String dummyHash;
+
+	/**
+	 * @param iterations the work factor of new hashes.
+	 * @param maxVerified the maximum number of verified hashes remembered (0 to always hash).
+	 */
+	public PasswordHasher(int iterations, int maxVerified) {
+		if (iterations < 1) {
+			throw new IllegalArgumentException("iterations must be positive");
+		}
+		this.iterations = iterations;
+		this.maxVerified = maxVerified;
+		random.nextBytes(verifiedKey);
+		this.verified = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+				return size() > PasswordHasher.this.maxVerified;
+			}
+		};
+		byte[] dummyPassword = new byte[16];
+		random.nextBytes(dummyPassword);
+		this.dummyHash = hash(Base64.getEncoder().encodeToString(dummyPassword));
+	}
+
+	/**
+	 * @param password the password to hash.
+	 * @return the password's hash with a new random salt, in the stored form.
+	 */
+	public String hash(String password) {
+		byte[] salt = new byte[SALT_BYTES];
+		random.nextBytes(salt);
+		Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+		return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$"
+				+ encoder.encodeToString(pbkdf2(password, salt, iterations));
+	}
+
+	/**
+	 * @param password the password to check.
+	 * @param stored the stored hash (or legacy plaintext password), or null if there is none.
+	 * @return true if the password matches the stored hash; always false for a null stored hash, after the same work
+	 * as a real check.
+	 */
+	public boolean verify(String password, String stored) {
+		if (stored == null) {
+			verifyHash(password, dummyHash);
+			return false;
+		}
+		if (!stored.startsWith(PREFIX)) {
+			return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+					stored.getBytes(StandardCharsets.UTF_8));
+		}
+		byte[] mac = maxVerified > 0 ? mac(password) : null;
+		if (mac != null) {
+			byte[] remembered;
+			synchronized (verified) {
+				remembered = verified.get(stored);
+			}
+			if (remembered != null && MessageDigest.isEqual(remembered, mac)) {
+				return true;
+			}
+		}
+		boolean matches = verifyHash(password, stored);
+		if (matches && mac != null) {
+			synchronized (verified) {
+				verified.put(stored, mac);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * @param stored a stored hash (or legacy plaintext password).
+	 * @return true if it should be replaced by a new hash of the same password after a successful verify: it is
+	 * plaintext, or was hashed with a different work factor.
+	 */
+	public boolean needsRehash(String stored) {
+		if (stored == null || !stored.startsWith(PREFIX)) {
+			return true;
+		}
+		int end = stored.indexOf('$', PREFIX.length());
+		return end < 0 || !stored.substring(PREFIX.length(), end).equals(Integer.toString(iterations));
+	}
+
+	/**
+	 * @return the work factor of new hashes.
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Forget every verified hash.
+	 */
+	public void clearVerified() {
+		synchronized (verified) {
+			verified.clear();
+		}
+	}
+
+	/**
+	 * @return true if the password matches a stored hash with the prefix; false if it does not or the hash is
+	 * malformed.
+	 */
+	private static boolean verifyHash(String password, String stored) {
+		String[] parts = stored.substring(PREFIX.length()).split("\\$");
+		if (parts.length != 3) {
+			return false;
+		}
+		try {
+			int storedIterations = Integer.parseInt(parts[0]);
+			byte[] salt = Base64.getDecoder().decode(parts[1]);
+			byte[] expected = Base64.getDecoder().decode(parts[2]);
+			if (storedIterations < 1 || expected.length == 0) {
+				return false;
+			}
+			return MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations, expected.length));
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+		return pbkdf2(password, salt, iterations, HASH_BYTES);
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations, int length) {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+		try {
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(ALGORITHM + " is not available", e);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+
+	private byte[] mac(String password) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(verifiedKey, "HmacSHA256"));
+			return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("HmacSHA256 is not available", e);
+		}
+	}
+}
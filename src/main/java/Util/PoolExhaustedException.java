@@ -0,0 +1,20 @@
+package Util;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Thrown by ConnectionUtil.getConnection() when no pooled connection became free within the acquire timeout. It is
+ * unchecked so it passes through the DAOs' SQLException handling untouched, and the controller answers it with status
+ * code 503 (service unavailable) instead of failing the request with a 500.
+ */
+public class PoolExhaustedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param cause the pool's timeout.
+	 */
+	public PoolExhaustedException(SQLTransientConnectionException cause) {
+		super(cause.getMessage(), cause);
+	}
+}
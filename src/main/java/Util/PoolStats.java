@@ -0,0 +1,127 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of a ConnectionPool's usage, used to size the pool.
+ */
+public class PoolStats {
+	/**
+	 * the maximum number of connections the pool will open.
+	 */
+	private int max_size;
+	/**
+	 * connections currently handed out.
+	 */
+	private int active;
+	/**
+	 * open connections waiting in the pool to be reused.
+	 */
+	private int idle;
+	/**
+	 * threads currently waiting for a connection.
+	 */
+	private int waiters;
+	/**
+	 * total number of connections handed out.
+	 */
+	private long acquire_count;
+	/**
+	 * mean time spent waiting in getConnection(), in nanoseconds.
+	 */
+	private long mean_acquire_nanos;
+	/**
+	 * longest time spent waiting in getConnection(), in nanoseconds.
+	 */
+	private long max_acquire_nanos;
+	/**
+	 * number of getConnection() calls that gave up after the acquire timeout.
+	 */
+	private long timeouts;
+	/**
+	 * number of connections reported as held past the leak threshold.
+	 */
+	private long leaks;
+	/**
+	 * number of prepareStatement() calls served from a connection's statement cache.
+	 */
+	private long statement_cache_hits;
+	/**
+	 * number of prepareStatement() calls that had to prepare a new statement.
+	 */
+	private long statement_cache_misses;
+
+	public PoolStats(int max_size, int active, int idle, int waiters, long acquire_count, long mean_acquire_nanos,
+			long max_acquire_nanos, long timeouts, long leaks, long statement_cache_hits, long statement_cache_misses) {
+		this.max_size = max_size;
+		this.active = active;
+		this.idle = idle;
+		this.waiters = waiters;
+		this.acquire_count = acquire_count;
+		this.mean_acquire_nanos = mean_acquire_nanos;
+		this.max_acquire_nanos = max_acquire_nanos;
+		this.timeouts = timeouts;
+		this.leaks = leaks;
+		this.statement_cache_hits = statement_cache_hits;
+		this.statement_cache_misses = statement_cache_misses;
+	}
+
+	public int getMax_size() {
+		return max_size;
+	}
+
+	public int getActive() {
+		return active;
+	}
+
+	public int getIdle() {
+		return idle;
+	}
+
+	public int getWaiters() {
+		return waiters;
+	}
+
+	public long getAcquire_count() {
+		return acquire_count;
+	}
+
+	public long getMean_acquire_nanos() {
+		return mean_acquire_nanos;
+	}
+
+	public long getMax_acquire_nanos() {
+		return max_acquire_nanos;
+	}
+
+	public long getTimeouts() {
+		return timeouts;
+	}
+
+	public long getLeaks() {
+		return leaks;
+	}
+
+	public long getStatement_cache_hits() {
+		return statement_cache_hits;
+	}
+
+	public long getStatement_cache_misses() {
+		return statement_cache_misses;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolStats{" +
+				"max_size=" + max_size +
+				", active=" + active +
+				", idle=" + idle +
+				", waiters=" + waiters +
+				", acquire_count=" + acquire_count +
+				", mean_acquire_nanos=" + mean_acquire_nanos +
+				", max_acquire_nanos=" + max_acquire_nanos +
+				", timeouts=" + timeouts +
+				", leaks=" + leaks +
+				", statement_cache_hits=" + statement_cache_hits +
+				", statement_cache_misses=" + statement_cache_misses +
+				'}';
+	}
+}
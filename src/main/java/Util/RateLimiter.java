@@ -0,0 +1,122 @@
+package Util;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One token bucket per key (an account_id, a client IP, ...): each key may make burst requests at once, and then
+ * ratePerSecond requests per second as the bucket refills.
+ *
+ * A bucket is a single AtomicLong holding the time at which it would be full again (the generic cell rate algorithm),
+ * so taking a token is one compare-and-set with no lock, and there is no refill timer: a request is allowed if that
+ * time is at most burst - 1 intervals in the future, and pushes it one interval further. Buckets live in a
+ * ConcurrentHashMap; once one has been full for idleMillis it is indistinguishable from a new one, and the first
+ * request after each idleMillis sweeps such buckets out, so keys seen once (e.g. a scan from many addresses) do not
+ * pile up.
+ */
+public class RateLimiter<K> {
+
+	/**
+	 * Nanoseconds between two tokens.
+	 */
+	private final long intervalNanos;
+	/**
+	 * How far in the future a bucket's full time may be for a request to be allowed: burst - 1 intervals.
+	 */
+	private final long toleranceNanos;
+	/**
+	 * How long a bucket stays after it is full again, in nanoseconds.
+	 */
+	private final long idleNanos;
+	private final ConcurrentHashMap<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+	private final AtomicLong nextSweep;
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * @param ratePerSecond how many requests per second each key may make once its burst is spent.
+	 * @param burst how many requests each key may make at once.
+	 * @param idleMillis how long a key's bucket is kept after it has refilled.
+	 */
+	public RateLimiter(double ratePerSecond, int burst, long idleMillis) {
+		if (ratePerSecond <= 0 || burst < 1) {
+			throw new IllegalArgumentException("ratePerSecond must be positive and burst at least 1");
+		}
+		this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+		this.toleranceNanos = intervalNanos * (burst - 1);
+		this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+		this.nextSweep = new AtomicLong(System.nanoTime() + idleNanos);
+	}
+
+	/**
+	 * Take a token from the key's bucket.
+	 *
+	 * @param key the client the request is counted against.
+	 * @return 0 if the request is allowed, otherwise how many nanoseconds until the bucket has a token again.
+	 */
+	public long tryAcquire(K key) {
+		return tryAcquire(key, System.nanoTime());
+	}
+
+	/**
+	 * Take a token from the key's bucket at the given time.
+	 *
+	 * @param key the client the request is counted against.
+	 * @param now the current System.nanoTime().
+	 * @return 0 if the request is allowed, otherwise how many nanoseconds until the bucket has a token again.
+	 */
+	public long tryAcquire(K key, long now) {
+		long sweep = nextSweep.get();
+		if (now - sweep >= 0 && nextSweep.compareAndSet(sweep, now + idleNanos)) {
+			evictIdle(now);
+		}
+		AtomicLong bucket = buckets.get(key);
+		if (bucket == null) {
+			bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+		}
+		while (true) {
+			long full = bucket.get();
+			long start = full - now > 0 ? full : now;
+			long wait = start - toleranceNanos - now;
+			if (wait > 0) {
+				rejected.increment();
+				return wait;
+			}
+			if (bucket.compareAndSet(full, start + intervalNanos)) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Remove the buckets that have been full for at least idleMillis at the given time. Requests racing with the
+	 * removal of their bucket are counted against the removed bucket, which was full, so at worst the key gets the
+	 * tokens of those few requests back.
+	 *
+	 * @param now the current System.nanoTime().
+	 */
+	public void evictIdle(long now) {
+		Iterator<AtomicLong> iterator = buckets.values().iterator();
+		while (iterator.hasNext()) {
+			if (now - iterator.next().get() >= idleNanos) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of keys with a bucket.
+	 */
+	public int getSize() {
+		return buckets.size();
+	}
+
+	/**
+	 * @return the number of requests rejected so far.
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+}
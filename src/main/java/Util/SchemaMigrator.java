@@ -0,0 +1,131 @@
+package Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.tools.RunScript;
+
+/**
+ * The SchemaMigrator brings the database schema up to date by running versioned migration scripts in order. The
+ * scripts are classpath resources named db/migration/V1.sql, V2.sql, ... whose first line is a "--" comment
+ * describing them. The version of every applied script is recorded in the schema_version table, so each script runs
+ * exactly once per database and new schema changes are shipped by adding the next script rather than editing an
+ * old one.
+ *
+ * A database that already has the account table but no recorded versions was created before migrations existed; V1
+ * (which creates the tables) is recorded as its baseline without being run, and the scripts after it are applied.
+ *
+ * H2 commits every DDL statement as it runs, so a script that fails part way cannot be rolled back: the statements
+ * before the failure stay applied and the script is not recorded. Callers should stop rather than run on a partially
+ * migrated schema.
+ */
+public class SchemaMigrator {
+
+	/**
+	 * Classpath location of the migration scripts.
+	 */
+	private static final String MIGRATION_PATH = "db/migration/V";
+	/**
+	 * Description recorded for V1 when it is taken as the baseline of a database created before migrations.
+	 */
+	private static final String BASELINE_DESCRIPTION = "Baseline of existing account and message tables";
+
+	/**
+	 * Run every migration script newer than the database's current version.
+	 *
+	 * @param connection the connection to migrate through.
+	 * @return the schema version after migrating.
+	 * @throws SQLException if a script fails; the versions before it stay applied, and so may part of the failed one.
+	 */
+	public static int migrate(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("create table if not exists schema_version ("
+					+ "version int primary key, "
+					+ "description varchar(255), "
+					+ "applied_at timestamp default current_timestamp)");
+		}
+		int version = currentVersion(connection);
+		if (version == 0 && tableExists(connection, "ACCOUNT")) {
+			record(connection, 1, BASELINE_DESCRIPTION);
+			version = 1;
+		}
+		while (true) {
+			int next = version + 1;
+			InputStream script = SchemaMigrator.class.getClassLoader().getResourceAsStream(MIGRATION_PATH + next + ".sql");
+			if (script == null) {
+				return version;
+			}
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(script, StandardCharsets.UTF_8))) {
+				reader.mark(1024);
+				String firstLine = reader.readLine();
+				String description = firstLine != null && firstLine.startsWith("--") ? firstLine.substring(2).trim() : "";
+				reader.reset();
+				apply(connection, next, description, reader);
+			} catch (IOException e) {
+				throw new SQLException("Could not read migration V" + next, e);
+			}
+			version = next;
+		}
+	}
+
+	/**
+	 * @param connection the connection to read the version through.
+	 * @return the highest version recorded in schema_version, or 0 for an empty database.
+	 * @throws SQLException if the version could not be read.
+	 */
+	public static int currentVersion(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery("select coalesce(max(version), 0) from schema_version")) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	/**
+	 * Run one script, then record its version once every statement in it has succeeded.
+	 */
+	private static void apply(Connection connection, int version, String description, Reader script)
+			throws SQLException {
+		try {
+			RunScript.execute(connection, script);
+		} catch (SQLException e) {
+			throw new SQLException("Migration V" + version + " failed: " + e.getMessage(), e);
+		}
+		record(connection, version, description);
+	}
+
+	/**
+	 * Record a version as applied.
+	 */
+	private static void record(Connection connection, int version, String description) throws SQLException {
+		try (PreparedStatement preparedStatement = connection.prepareStatement(
+				"insert into schema_version (version, description) values (?, ?)")) {
+			preparedStatement.setInt(1, version);
+			preparedStatement.setString(2, description);
+			preparedStatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * @return true if a table with the given (upper case) name exists in the current schema.
+	 */
+	private static boolean tableExists(Connection connection, String table) throws SQLException {
+		try (PreparedStatement preparedStatement = connection.prepareStatement("select count(*) from "
+				+ "information_schema.tables where table_schema = current_schema and table_name = ?")) {
+			preparedStatement.setString(1, table);
+			try (ResultSet rs = preparedStatement.executeQuery()) {
+				rs.next();
+				return rs.getInt(1) > 0;
+			}
+		}
+	}
+}
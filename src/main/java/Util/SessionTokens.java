@@ -0,0 +1,110 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Stateless session tokens: "account_id.expires.signature", where expires is in epoch seconds and signature is the
+ * base64url HMAC-SHA256 of "account_id.expires" under a secret key. A token is checked in memory with one HMAC, so an
+ * authenticated request costs no account lookup, and nothing has to be stored to issue or expire one.
+ *
+ * The key is the base64 auth.tokenSecret system property when it is set, so tokens stay valid across restarts and
+ * between servers that share it; otherwise it is random, and tokens only verify in the process that issued them.
+ * Tokens cannot be revoked before they expire.
+ */
+public class SessionTokens {
+
+	private static final String ALGORITHM = "HmacSHA256";
+
+	private final SecretKeySpec key;
+	private final long ttlSeconds;
+	private final ThreadLocal<Mac> macs;
+
+	/**
+	 * @return session tokens signed with the auth.tokenSecret system property (or a random key when it is not set)
+	 * that expire auth.tokenTtlSeconds after they are issued (one hour by default).
+	 */
+	public static SessionTokens fromConfig() {
+		String secret = System.getProperty("auth.tokenSecret");
+		byte[] key;
+		if (secret != null) {
+			key = Base64.getDecoder().decode(secret);
+		} else {
+			key = new byte[32];
+			new SecureRandom().nextBytes(key);
+		}
+		return new SessionTokens(key, Long.getLong("auth.tokenTtlSeconds", 3600));
+	}
+
+	/**
+	 * @param key the secret key tokens are signed with.
+	 * @param ttlSeconds how long a token is valid after it is issued.
+	 */
+	public SessionTokens(byte[] key, long ttlSeconds) {
+		if (key.length == 0) {
+			throw new IllegalArgumentException("key must not be empty");
+		}
+		this.key = new SecretKeySpec(key, ALGORITHM);
+		this.ttlSeconds = ttlSeconds;
+		this.macs = ThreadLocal.withInitial(this::newMac);
+	}
+
+	/**
+	 * @param account_id the account the token is issued to.
+	 * @return a new token for the account, valid for the configured time to live.
+	 */
+	public String issue(int account_id) {
+		String claims = account_id + "." + (System.currentTimeMillis() / 1000 + ttlSeconds);
+		return claims + "." + sign(claims);
+	}
+
+	/**
+	 * @param token a token from issue, or null.
+	 * @return the account_id the token was issued to, or -1 if it is null, malformed, forged or expired.
+	 */
+	public int verify(String token) {
+		if (token == null) {
+			return -1;
+		}
+		int signatureStart = token.lastIndexOf('.');
+		int expiresStart = signatureStart > 0 ? token.lastIndexOf('.', signatureStart - 1) : -1;
+		if (expiresStart <= 0) {
+			return -1;
+		}
+		String claims = token.substring(0, signatureStart);
+		byte[] expected = sign(claims).getBytes(StandardCharsets.US_ASCII);
+		byte[] actual = token.substring(signatureStart + 1).getBytes(StandardCharsets.US_ASCII);
+		if (!MessageDigest.isEqual(expected, actual)) {
+			return -1;
+		}
+		try {
+			int account_id = Integer.parseInt(token.substring(0, expiresStart));
+			long expires = Long.parseLong(token.substring(expiresStart + 1, signatureStart));
+			return expires >= System.currentTimeMillis() / 1000 ? account_id : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private String sign(String claims) {
+		byte[] signature = macs.get().doFinal(claims.getBytes(StandardCharsets.US_ASCII));
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+	}
+
+	private Mac newMac() {
+		try {
+			Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(key);
+			return mac;
+		} catch (NoSuchAlgorithmException | InvalidKeyException e) {
+			throw new IllegalStateException(ALGORITHM + " is not available", e);
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An LRU cache of PreparedStatements for one physical connection, keyed by SQL. Statements handed out are proxies
+ * whose close() clears their parameters and any unexecuted batch and keeps them open for the next caller preparing
+ * the same SQL, so hot queries are only parsed and planned once per connection. Only used by the connection's current
+ * borrower, so it is not thread-safe.
+ */
+class StatementCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(StatementCache.class);
+
+	/**
+	 * The connection the statements are prepared on.
+	 */
+	private final Connection physical;
+	/**
+	 * Cached statements in least-recently-used order; the eldest is closed once the cache is over capacity.
+	 */
+	private final LinkedHashMap<String, CachedStatement> statements;
+	private final LongAdder hits;
+	private final LongAdder misses;
+
+	/**
+	 * @param physical the connection the statements are prepared on.
+	 * @param capacity the maximum number of statements kept open.
+	 * @param hits counter incremented when a cached statement is reused.
+	 * @param misses counter incremented when a statement has to be prepared.
+	 */
+	StatementCache(Connection physical, int capacity, LongAdder hits, LongAdder misses) {
+		this.physical = physical;
+		this.hits = hits;
+		this.misses = misses;
+		this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+				if (size() > capacity) {
+					eldest.getValue().evict();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Prepare sql on the physical connection, reusing a cached statement if one is free.
+	 *
+	 * @param handle the Connection proxy the caller holds, returned from the statement's getConnection().
+	 * @param sql the SQL to prepare.
+	 * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS.
+	 * @return a statement whose close() returns it to the cache.
+	 * @throws SQLException if the statement could not be prepared.
+	 */
+	PreparedStatement prepare(Connection handle, String sql, int autoGeneratedKeys) throws SQLException {
+		String key = autoGeneratedKeys + ":" + sql;
+		CachedStatement cached = statements.get(key);
+		if (cached != null && !cached.inUse) {
+			hits.increment();
+		} else {
+			misses.increment();
+			PreparedStatement statement = physical.prepareStatement(sql, autoGeneratedKeys);
+			if (cached != null) {
+				// the cached one is still open in the same lease; hand out an uncached statement instead
+				return newHandle(handle, new CachedStatement(statement, true));
+			}
+			cached = new CachedStatement(statement, false);
+			statements.put(key, cached);
+		}
+		cached.inUse = true;
+		return newHandle(handle, cached);
+	}
+
+	/**
+	 * Close and drop statements the last borrower never closed, since their state can no longer be trusted.
+	 */
+	void releaseAll() {
+		Iterator<CachedStatement> it = statements.values().iterator();
+		while (it.hasNext()) {
+			CachedStatement cached = it.next();
+			if (cached.inUse) {
+				it.remove();
+				cached.evict();
+			}
+		}
+	}
+
+	/**
+	 * Close every cached statement.
+	 */
+	void closeAll() {
+		for (CachedStatement cached : statements.values()) {
+			cached.evict();
+		}
+		statements.clear();
+	}
+
+	private PreparedStatement newHandle(Connection handle, CachedStatement cached) {
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new Handle(handle, cached));
+	}
+
+	/**
+	 * A physical statement and whether a caller currently holds it.
+	 */
+	private static final class CachedStatement {
+		private final PreparedStatement statement;
+		/**
+		 * true for statements that are closed for real when the caller closes them.
+		 */
+		private final boolean uncached;
+		private boolean inUse;
+		private boolean evicted;
+
+		CachedStatement(PreparedStatement statement, boolean uncached) {
+			this.statement = statement;
+			this.uncached = uncached;
+		}
+
+		/**
+		 * Close the statement now, or when its caller closes it if it is still in use.
+		 */
+		void evict() {
+			evicted = true;
+			if (!inUse) {
+				closeQuietly();
+			}
+		}
+
+		/**
+		 * Return the statement to the cache, or close it if it was evicted while in use.
+		 */
+		void giveBack() {
+			inUse = false;
+			if (evicted || uncached) {
+				closeQuietly();
+				return;
+			}
+			try {
+				statement.clearParameters();
+				statement.clearBatch();
+			} catch (SQLException e) {
+				evicted = true;
+				closeQuietly();
+			}
+		}
+
+		private void closeQuietly() {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				LOGGER.warn("Could not close a cached statement", e);
+			}
+		}
+	}
+
+	/**
+	 * Forwards every call to the cached statement, except close() which gives it back to the cache instead.
+	 */
+	private static final class Handle implements InvocationHandler {
+		private final Connection connection;
+		private CachedStatement cached;
+
+		Handle(Connection connection, CachedStatement cached) {
+			this.connection = connection;
+			this.cached = cached;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					if (cached != null) {
+						CachedStatement returned = cached;
+						cached = null;
+						returned.giveBack();
+					}
+					return null;
+				case "isClosed":
+					return cached == null;
+				case "getConnection":
+					return connection;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "CachedStatement[" + (cached == null ? "closed" : cached.statement) + "]";
+				default:
+					if (cached == null) {
+						throw new SQLException("Statement has been closed");
+					}
+					try {
+						return method.invoke(cached.statement, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+			}
+		}
+	}
+
+	/**
+	 * @return true if method is one of the prepareStatement overloads this cache can serve.
+	 */
+	static boolean isCacheable(Method method) {
+		if (!method.getName().equals("prepareStatement")) {
+			return false;
+		}
+		Class<?>[] types = method.getParameterTypes();
+		return types.length == 1 || (types.length == 2 && types[1] == int.class);
+	}
+
+	/**
+	 * @return the autoGeneratedKeys flag passed to a cacheable prepareStatement call.
+	 */
+	static int autoGeneratedKeys(Object[] args) {
+		return args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+	}
+}
@@ -0,0 +1,55 @@
+package Util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version counters for resources identified by an int id (e.g. a message or an account's timeline), for building
+ * ETags that change whenever the resource does. Writers call bump() after their change is committed; readers take
+ * the version before reading the resource, so a response can only be tagged with a version that is older than its
+ * content, never newer, and a racing write can only cause an extra full response, never a stale 304.
+ *
+ * Ids share a fixed number of counters (the id modulo the table size), so memory does not grow with the number of
+ * resources; a collision only makes an unchanged resource look changed. Counters start from a random epoch, which
+ * reset() replaces, so versions handed out before a restart or a database reset are never mistaken for current ones.
+ */
+public class VersionTable {
+
+	private final AtomicLongArray versions;
+	private volatile long epoch = ThreadLocalRandom.current().nextLong();
+
+	/**
+	 * @param size the number of counters shared by all ids.
+	 */
+	public VersionTable(int size) {
+		versions = new AtomicLongArray(size);
+	}
+
+	/**
+	 * @param id the id of the resource.
+	 * @return the resource's current version, as a quoted ETag value.
+	 */
+	public String etag(int id) {
+		return "\"" + Long.toHexString(epoch) + "-" + Long.toHexString(versions.get(slot(id))) + "\"";
+	}
+
+	/**
+	 * Mark a resource as changed.
+	 *
+	 * @param id the id of the resource.
+	 */
+	public void bump(int id) {
+		versions.incrementAndGet(slot(id));
+	}
+
+	/**
+	 * Invalidate every version handed out so far.
+	 */
+	public void reset() {
+		epoch = ThreadLocalRandom.current().nextLong();
+	}
+
+	private int slot(int id) {
+		return Math.floorMod(id, versions.length());
+	}
+}
@@ -0,0 +1,393 @@
+package Util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only log of records in a single file, written with group commit: append() only copies a record into an
+ * in-memory buffer, and callers that need a record to be durable wait for it with awaitDurable(). With a flush
+ * interval of 0 (the default) the first waiter becomes the leader and writes and forces the buffer right away, while
+ * the records appended during that fsync queue up and are forced together by the next leader, so there is no added
+ * latency when the log is idle and one fsync per batch under load. With a positive flush interval a background
+ * thread flushes instead, at most once every flushIntervalMillis, trading that much latency for larger batches.
+ *
+ * Each record is framed as its length, its CRC32 and its bytes. When the log is opened, it is scanned and cut off at
+ * the first incomplete or corrupt record, which can only be a write torn by a crash.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+
+	private static final int HEADER_BYTES = 8;
+
+	private final Path file;
+	private final long flushIntervalMillis;
+	private FileChannel channel;
+
+	/**
+	 * Held while writing to or replacing the file, so flushes and truncations happen one at a time.
+	 */
+	private final ReentrantLock ioLock = new ReentrantLock();
+	/**
+	 * Held while touching the pending buffer and sequence numbers.
+	 */
+	private final ReentrantLock bufferLock = new ReentrantLock();
+	private final Condition durable = bufferLock.newCondition();
+	private final Condition appended = bufferLock.newCondition();
+	private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+	/**
+	 * Whether a waiter is flushing as the leader; the others wait for it rather than queue up on ioLock.
+	 */
+	private boolean leading;
+	/**
+	 * Sequence number of the last appended record, and of the last record forced to disk.
+	 */
+	private long appendedSeq;
+	private long durableSeq;
+	/**
+	 * File position just after the last appended record, counting records still in the pending buffer.
+	 */
+	private long endPosition;
+	private IOException failure;
+	private volatile boolean closed;
+	private final Thread flusher;
+
+	/**
+	 * Open (or create) the log, dropping a torn record at its end if there is one.
+	 *
+	 * @param file the log file.
+	 * @param flushIntervalMillis how often a background thread writes and forces buffered records to disk, or 0 to
+	 * have waiting callers do it as soon as the previous fsync is done.
+	 * @throws UncheckedIOException if the file cannot be opened.
+	 */
+	public WriteAheadLog(Path file, long flushIntervalMillis) {
+		this.file = file;
+		this.flushIntervalMillis = flushIntervalMillis;
+		try {
+			if (file.toAbsolutePath().getParent() != null) {
+				Files.createDirectories(file.toAbsolutePath().getParent());
+			}
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			endPosition = scan(null);
+			channel.truncate(endPosition);
+			channel.position(endPosition);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (flushIntervalMillis > 0) {
+			flusher = new Thread(this::flushLoop, "write-ahead-log-flusher");
+			flusher.setDaemon(true);
+			flusher.start();
+		} else {
+			flusher = null;
+		}
+	}
+
+	/**
+	 * Pass every record in the log to the given consumer, oldest first. Meant to be called once, right after the log
+	 * is opened and before anything is appended.
+	 *
+	 * @param consumer receives the bytes of each record.
+	 * @return the number of records replayed.
+	 * @throws UncheckedIOException if the file cannot be read.
+	 */
+	public long replay(Consumer<ByteBuffer> consumer) {
+		ioLock.lock();
+		try {
+			long[] count = new long[1];
+			scan(record -> {
+				count[0]++;
+				consumer.accept(record);
+			});
+			return count[0];
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			ioLock.unlock();
+		}
+	}
+
+	/**
+	 * Read the log from the start, passing each valid record to the consumer (if any).
+	 *
+	 * @return the position just after the last valid record.
+	 */
+	private long scan(Consumer<ByteBuffer> consumer) throws IOException {
+		long position = 0;
+		long size = channel.size();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		CRC32 crc = new CRC32();
+		while (position + HEADER_BYTES <= size) {
+			header.clear();
+			while (header.hasRemaining()) {
+				channel.read(header, position + header.position());
+			}
+			header.flip();
+			int length = header.getInt();
+			int checksum = header.getInt();
+			if (length < 0 || position + HEADER_BYTES + length > size) {
+				break;
+			}
+			ByteBuffer record = ByteBuffer.allocate(length);
+			while (record.hasRemaining()) {
+				channel.read(record, position + HEADER_BYTES + record.position());
+			}
+			record.flip();
+			crc.reset();
+			crc.update(record.duplicate());
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			if (consumer != null) {
+				consumer.accept(record);
+			}
+			position += HEADER_BYTES + length;
+		}
+		return position;
+	}
+
+	/**
+	 * Add a record to the log. It is durable once awaitDurable() returns for the returned sequence number.
+	 *
+	 * @param record the bytes of the record.
+	 * @return the record's sequence number.
+	 * @throws UncheckedIOException if the log is closed or a previous write failed.
+	 */
+	public long append(byte[] record) {
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		long seq;
+		bufferLock.lock();
+		try {
+			checkUsable();
+			if (pending.remaining() < HEADER_BYTES + record.length) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+						pending.position() + HEADER_BYTES + record.length));
+				pending.flip();
+				larger.put(pending);
+				pending = larger;
+			}
+			pending.putInt(record.length).putInt((int) crc.getValue()).put(record);
+			endPosition += HEADER_BYTES + record.length;
+			seq = ++appendedSeq;
+			appended.signal();
+		} finally {
+			bufferLock.unlock();
+		}
+		return seq;
+	}
+
+	/**
+	 * Wait until the record with the given sequence number has been forced to disk. Without a background thread, a
+	 * caller that finds no flush running flushes every pending record itself.
+	 *
+	 * @param seq a sequence number returned by append().
+	 * @throws UncheckedIOException if the write failed or the log was closed first.
+	 */
+	public void awaitDurable(long seq) {
+		bufferLock.lock();
+		try {
+			while (durableSeq < seq) {
+				checkUsable();
+				if (flusher != null || leading) {
+					durable.awaitUninterruptibly();
+					continue;
+				}
+				leading = true;
+				bufferLock.unlock();
+				try {
+					flush();
+				} finally {
+					bufferLock.lock();
+					leading = false;
+					durable.signalAll();
+				}
+			}
+		} finally {
+			bufferLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the position just after the last appended record, for truncateBefore().
+	 */
+	public long mark() {
+		bufferLock.lock();
+		try {
+			return endPosition;
+		} finally {
+			bufferLock.unlock();
+		}
+	}
+
+	/**
+	 * Drop every record before the given mark, e.g. once a snapshot holds their effects. Records appended after the
+	 * mark are kept, and the shortened log replaces the old one in one step.
+	 *
+	 * @param mark a position returned by mark().
+	 * @throws UncheckedIOException if the log cannot be rewritten.
+	 */
+	public void truncateBefore(long mark) {
+		ioLock.lock();
+		try {
+			flush();
+			Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				long size = channel.size();
+				long position = mark;
+				while (position < size) {
+					position += channel.transferTo(position, size - position, out);
+				}
+				out.force(true);
+			}
+			channel.close();
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			channel.position(channel.size());
+			bufferLock.lock();
+			try {
+				endPosition -= mark;
+			} finally {
+				bufferLock.unlock();
+			}
+		} catch (IOException e) {
+			fail(e);
+			throw new UncheckedIOException(e);
+		} finally {
+			ioLock.unlock();
+		}
+	}
+
+	/**
+	 * Write the pending records and force them to disk, then wake the callers waiting for them.
+	 */
+	private void flush() {
+		ioLock.lock();
+		try {
+			ByteBuffer toWrite;
+			long seq;
+			bufferLock.lock();
+			try {
+				if (durableSeq == appendedSeq || failure != null) {
+					return;
+				}
+				toWrite = pending;
+				toWrite.flip();
+				pending = ByteBuffer.allocate(toWrite.capacity());
+				seq = appendedSeq;
+			} finally {
+				bufferLock.unlock();
+			}
+			try {
+				while (toWrite.hasRemaining()) {
+					channel.write(toWrite);
+				}
+				channel.force(false);
+			} catch (IOException e) {
+				fail(e);
+				return;
+			}
+			bufferLock.lock();
+			try {
+				durableSeq = seq;
+				durable.signalAll();
+			} finally {
+				bufferLock.unlock();
+			}
+		} finally {
+			ioLock.unlock();
+		}
+	}
+
+	/**
+	 * Flush whenever there are pending records, but at most once per flush interval, so records appended while the
+	 * previous flush was running (or shortly after it) share the next fsync.
+	 */
+	private void flushLoop() {
+		long lastFlush = 0;
+		while (!closed) {
+			bufferLock.lock();
+			try {
+				while (durableSeq == appendedSeq && !closed) {
+					appended.awaitUninterruptibly();
+				}
+			} finally {
+				bufferLock.unlock();
+			}
+			long wait = lastFlush + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis) - System.nanoTime();
+			if (wait > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			lastFlush = System.nanoTime();
+			flush();
+		}
+	}
+
+	private void fail(IOException e) {
+		LOGGER.error("Writing the write-ahead log failed", e);
+		bufferLock.lock();
+		try {
+			failure = e;
+			durable.signalAll();
+		} finally {
+			bufferLock.unlock();
+		}
+	}
+
+	/**
+	 * Must hold bufferLock.
+	 */
+	private void checkUsable() {
+		if (failure != null) {
+			throw new UncheckedIOException(failure);
+		}
+		if (closed) {
+			throw new UncheckedIOException(new IOException("write-ahead log is closed"));
+		}
+	}
+
+	/**
+	 * Force the pending records to disk and close the file. Callers still waiting on records get an exception.
+	 */
+	@Override
+	public void close() {
+		flush();
+		bufferLock.lock();
+		try {
+			closed = true;
+			appended.signalAll();
+			durable.signalAll();
+		} finally {
+			bufferLock.unlock();
+		}
+		ioLock.lock();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			LOGGER.warn("Could not close the write-ahead log", e);
+		} finally {
+			ioLock.unlock();
+		}
+	}
+}
@@ -0,0 +1,2 @@
+-- Index an account's messages newest first, for timeline pages
+create index message_posted_by_time_idx on message (posted_by, time_posted_epoch desc, message_id desc);
@@ -0,0 +1,2 @@
+-- Index messages by time posted, for time-range queries
+create index message_time_idx on message (time_posted_epoch, message_id);
@@ -0,0 +1,53 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountCache;
+import Model.Account;
+import Util.CacheStats;
+
+public class AccountCacheTest {
+    AccountCache cache;
+
+    /**
+     * Before every test, create a cache that holds at most two accounts.
+     */
+    @Before
+    public void setUp() {
+        cache = new AccountCache(2);
+    }
+
+    /**
+     * A cached account should be found by both its account_id and its username.
+     */
+    @Test
+    public void getByIdAndUsername() {
+        Account account = new Account(1, "testuser1", "password");
+        cache.put(account);
+
+        Assert.assertEquals(account, cache.get(1));
+        Assert.assertEquals(account, cache.get("testuser1"));
+        Assert.assertNull(cache.get(2));
+
+        CacheStats stats = cache.getStats();
+        Assert.assertEquals(2, stats.getHits());
+        Assert.assertEquals(1, stats.getMisses());
+    }
+
+    /**
+     * Once the cache is full, the least recently used account should be evicted under both keys.
+     */
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        cache.put(new Account(1, "testuser1", "password"));
+        cache.put(new Account(2, "testuser2", "password"));
+        cache.get(1);
+        cache.put(new Account(3, "testuser3", "password"));
+
+        Assert.assertNotNull(cache.get(1));
+        Assert.assertNull(cache.get(2));
+        Assert.assertNull(cache.get("testuser2"));
+        Assert.assertNotNull(cache.get("testuser3"));
+        Assert.assertEquals(2, cache.getStats().getSize());
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.BoundedExecutor;
+
+public class BoundedExecutorTest {
+    BoundedExecutor executor;
+    CountDownLatch release;
+
+    /**
+     * Before every test, create an executor with one worker and room for one waiting task.
+     */
+    @Before
+    public void setUp() {
+        executor = new BoundedExecutor("test", 1, 1);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.close();
+    }
+
+    /**
+     * Work should run on a worker thread and complete the returned future with its result.
+     */
+    @Test
+    public void supplyCompletesWithResult() throws Exception {
+        CompletableFuture<String> result = executor.supply(() -> Thread.currentThread().getName());
+        Assert.assertEquals("test-1", result.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Once the worker is busy and the queue is full, new work should fail with a RejectedExecutionException and be
+     * counted, and queued work should still run once the worker is free.
+     */
+    @Test
+    public void rejectWhenQueueFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Integer> running = executor.supply(() -> {
+            started.countDown();
+            awaitRelease();
+            return 1;
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> queued = executor.supply(() -> 2);
+        Assert.assertEquals(1, executor.getQueueDepth());
+
+        CompletableFuture<Integer> rejected = executor.supply(() -> 3);
+        try {
+            rejected.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the third task to be rejected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        Assert.assertEquals(1, executor.getRejected());
+
+        release.countDown();
+        Assert.assertEquals(Integer.valueOf(1), running.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Integer.valueOf(2), queued.get(5, TimeUnit.SECONDS));
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConcurrencyLimiter;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConcurrencyLimiterTest {
+    ConcurrencyLimiter limiter;
+    Javalin app;
+
+    /**
+     * Before every test, create a limiter that lets two requests run at once and makes others wait 100ms.
+     */
+    @Before
+    public void setUp() {
+        limiter = new ConcurrencyLimiter(2, 100);
+    }
+
+    @After
+    public void tearDown() {
+        if (app != null) {
+            app.stop();
+        }
+        System.clearProperty("server.maxConcurrentRequests");
+        System.clearProperty("server.limiterTimeoutMillis");
+    }
+
+    /**
+     * Once every permit is taken, further requests should be rejected after the timeout and counted.
+     */
+    @Test
+    public void rejectWhenFull() {
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertEquals(2, limiter.getActive());
+
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(1, limiter.getRejected());
+
+        limiter.release();
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertEquals(1, limiter.getRejected());
+    }
+
+    /**
+     * A request waiting for a permit should get it as soon as one is released within the timeout.
+     */
+    @Test
+    public void waiterGetsReleasedPermit() throws InterruptedException {
+        limiter = new ConcurrencyLimiter(1, 5000);
+        Assert.assertTrue(limiter.tryAcquire());
+
+        AtomicBoolean acquired = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            acquired.set(limiter.tryAcquire());
+            done.countDown();
+        });
+        waiter.start();
+        while (limiter.getWaiters() == 0) {
+            Thread.sleep(1);
+        }
+        limiter.release();
+
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(acquired.get());
+        Assert.assertEquals(0, limiter.getRejected());
+    }
+
+    /**
+     * A request whose work runs on an executor should hold its permit until that work is done, not only while its
+     * handler runs: while a registration hashes its password, another request should be rejected with 503.
+     */
+    @Test
+    public void asyncRouteHoldsPermitUntilDone() throws IOException, InterruptedException {
+        System.setProperty("server.maxConcurrentRequests", "1");
+        System.setProperty("server.limiterTimeoutMillis", "0");
+        ConnectionUtil.resetTestDatabase();
+        app = new SocialMediaController().startAPI();
+        app.start(8080);
+        HttpClient webClient = HttpClient.newHttpClient();
+
+        HttpRequest get = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/1")).build();
+        Assert.assertEquals(200, webClient.send(get, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest register = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"slowuser\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        CompletableFuture<HttpResponse<String>> registered = webClient.sendAsync(register,
+                HttpResponse.BodyHandlers.ofString());
+        Thread.sleep(50);
+
+        Assert.assertEquals(503, webClient.send(get, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(200, registered.join().statusCode());
+        Assert.assertEquals(200, webClient.send(get, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        // a request stopped by a later before-handler gives its permit back too
+        HttpRequest unauthorized = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                .header("Authorization", "Bearer forged")
+                .build();
+        Assert.assertEquals(401, webClient.send(unauthorized, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(200, webClient.send(get, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+}
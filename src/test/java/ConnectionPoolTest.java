@@ -0,0 +1,138 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionPool;
+import Util.PoolStats;
+
+public class ConnectionPoolTest {
+    ConnectionPool pool;
+
+    /**
+     * Before every test, create a pool of two connections to a private in-memory database, which reports connections
+     * held for more than 100ms as leaks.
+     */
+    @Before
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+        pool = new ConnectionPool(dataSource, 2, 200, 60000, 100, false, 2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * Closing a borrowed connection should return it to the pool to be reused instead of opening another.
+     */
+    @Test
+    public void closedConnectionIsReused() throws SQLException {
+        Connection first = pool.getConnection();
+        first.close();
+        Assert.assertTrue(first.isClosed());
+
+        try (Connection second = pool.getConnection()) {
+            Assert.assertFalse(second.isClosed());
+            PoolStats stats = pool.getStats();
+            Assert.assertEquals(1, stats.getActive());
+            Assert.assertEquals(0, stats.getIdle());
+        }
+        PoolStats stats = pool.getStats();
+        Assert.assertEquals(0, stats.getActive());
+        Assert.assertEquals(1, stats.getIdle());
+        Assert.assertEquals(2, stats.getAcquire_count());
+    }
+
+    /**
+     * Once maxSize connections are in use, getConnection() should give up after the acquire timeout.
+     */
+    @Test
+    public void exhaustedPoolTimesOut() throws SQLException {
+        try (Connection a = pool.getConnection(); Connection b = pool.getConnection()) {
+            Assert.assertThrows(SQLTransientConnectionException.class, () -> pool.getConnection());
+            Assert.assertEquals(1, pool.getStats().getTimeouts());
+        }
+        try (Connection c = pool.getConnection()) {
+            Assert.assertEquals(1, pool.getStats().getActive());
+        }
+    }
+
+    /**
+     * Preparing the same SQL again on a returned connection should reuse the cached statement.
+     */
+    @Test
+    public void preparedStatementIsCached() throws SQLException {
+        String sql = "SELECT ? + 1";
+        for (int i = 0; i < 3; i++) {
+            try (Connection connection = pool.getConnection();
+                    PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setInt(1, i);
+                try (ResultSet rs = ps.executeQuery()) {
+                    Assert.assertTrue(rs.next());
+                    Assert.assertEquals(i + 1, rs.getInt(1));
+                }
+            }
+        }
+        PoolStats stats = pool.getStats();
+        Assert.assertEquals(1, stats.getStatement_cache_misses());
+        Assert.assertEquals(2, stats.getStatement_cache_hits());
+    }
+
+    /**
+     * A batch left unexecuted when a cached statement is closed should not be run by the next caller preparing it.
+     */
+    @Test
+    public void cachedStatementBatchIsCleared() throws SQLException {
+        String sql = "INSERT INTO batch_test VALUES (?)";
+        try (Connection connection = pool.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS batch_test (x INT)");
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setInt(1, 1);
+                ps.addBatch();
+            }
+        }
+        try (Connection connection = pool.getConnection();
+                PreparedStatement ps = connection.prepareStatement(sql)) {
+            Assert.assertEquals(0, ps.executeBatch().length);
+        }
+        Assert.assertEquals(1, pool.getStats().getStatement_cache_hits());
+    }
+
+    /**
+     * A connection held past the leak threshold should be counted once, even without tracing where it was acquired.
+     */
+    @Test
+    public void heldConnectionIsReportedAsLeak() throws Exception {
+        try (Connection connection = pool.getConnection()) {
+            Thread.sleep(500);
+            Assert.assertEquals(1, pool.getStats().getLeaks());
+        }
+        try (Connection connection = pool.getConnection()) {
+            Assert.assertEquals(1, pool.getStats().getLeaks());
+        }
+    }
+
+    /**
+     * A connection handle should not be usable after it has been returned to the pool.
+     */
+    @Test
+    public void returnedConnectionCannotBeUsed() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        Assert.assertThrows(SQLException.class, () -> connection.createStatement());
+    }
+}
@@ -0,0 +1,119 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageStore;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ImportMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/bulk with a session token and a JSON array of one valid
+     * message, one blank message and one message from another account
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one result per message, only the first one inserted, the last one rejected with status 403
+     */
+    @Test
+    public void importJsonArray() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/bulk"))
+                .POST(HttpRequest.BodyPublishers.ofString("[" +
+                        "{\"posted_by\":1, \"message_text\": \"imported message\", \"time_posted_epoch\": 1669947792}," +
+                        "{\"posted_by\":1, \"message_text\": \"\", \"time_posted_epoch\": 1669947792}," +
+                        "{\"posted_by\":50, \"message_text\": \"unknown user\", \"time_posted_epoch\": 1669947792}]"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + login())
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+
+        JsonNode results = objectMapper.readTree(response.body());
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(200, results.get(0).get("status").asInt());
+        Assert.assertEquals(new Message(2, 1, "imported message", 1669947792),
+                objectMapper.treeToValue(results.get(0).get("message"), Message.class));
+        Assert.assertEquals(400, results.get(1).get("status").asInt());
+        Assert.assertEquals(403, results.get(2).get("status").asInt());
+        Assert.assertEquals(2, MessageStore.fromConfig().getAllMessages().size());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/bulk with newline-delimited JSON that is cut off
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the complete messages are inserted, and a final result reports the parse error
+     */
+    @Test
+    public void importNdjsonWithMalformedTail() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/bulk"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\":1, \"message_text\": \"first\", \"time_posted_epoch\": 1669947792}\n" +
+                        "{\"posted_by\":1, \"message_text\": \"second\", \"time_posted_epoch\": 1669947793}\n" +
+                        "{\"posted_by\":1, \"message_text\": "))
+                .header("Content-Type", "application/x-ndjson")
+                .header("Authorization", "Bearer " + login())
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+
+        JsonNode results = objectMapper.readTree(response.body());
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(3, results.get(1).get("message").get("message_id").asInt());
+        Assert.assertEquals(2, results.get(2).get("index").asInt());
+        Assert.assertEquals(400, results.get(2).get("status").asInt());
+        Assert.assertEquals(3, MessageStore.fromConfig().getAllMessages().size());
+    }
+
+    private String login() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"testuser1\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return response.headers().firstValue("X-Session-Token").orElseThrow();
+    }
+}
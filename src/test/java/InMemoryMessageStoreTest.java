@@ -0,0 +1,144 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.InMemoryMessageStore;
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.WriteAheadLog;
+
+public class InMemoryMessageStoreTest {
+    InMemoryMessageStore store;
+    Path snapshot;
+
+    /**
+     * Before every test, reset the database and load its messages into a new store.
+     */
+    @Before
+    public void setUp() throws Exception {
+        ConnectionUtil.resetTestDatabase();
+        store = new InMemoryMessageStore(new AccountDAO());
+        store.loadFrom(new MessageDAO());
+        snapshot = Files.createTempFile("messages", ".snapshot");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(snapshot);
+    }
+
+    /**
+     * Inserts should get the next message_id and reject unknown accounts, like the foreign key in the database.
+     */
+    @Test
+    public void insertAssignsIdsAndChecksPoster() {
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), store.getMessageById(1));
+        Assert.assertEquals(new Message(2, 1, "second", 1669947793), store.insertMessage(new Message(1, "second", 1669947793)));
+        Assert.assertNull(store.insertMessage(new Message(50, "unknown user", 1669947793)));
+        Assert.assertEquals(2, store.size());
+    }
+
+    /**
+     * Timeline pages should be newest first and continue after the cursor, skipping deleted messages.
+     */
+    @Test
+    public void timelinePagesNewestFirst() {
+        for (int i = 0; i < 4; i++) {
+            store.insertMessage(new Message(1, "message " + i, 1669947800L + i));
+        }
+        store.deleteMessageById(4);
+
+        List<Message> first = store.getMessagesPostedByBefore(1, Long.MAX_VALUE, Integer.MAX_VALUE, 2);
+        Assert.assertEquals(5, first.get(0).getMessage_id());
+        Assert.assertEquals(3, first.get(1).getMessage_id());
+
+        Message last = first.get(1);
+        List<Message> second = store.getMessagesPostedByBefore(1, last.getTime_posted_epoch(), last.getMessage_id(), 2);
+        Assert.assertEquals(2, second.get(0).getMessage_id());
+        Assert.assertEquals(1, second.get(1).getMessage_id());
+    }
+
+    /**
+     * Time ranges should include both ends, list messages oldest first, and see updates and deletes.
+     */
+    @Test
+    public void timeRangesOldestFirst() {
+        for (int i = 0; i < 4; i++) {
+            store.insertMessage(new Message(1, "message " + i, 1669947800L + i / 2));
+        }
+        store.updateMessageById(3, "updated");
+        store.deleteMessageById(4);
+
+        List<Message> range = new ArrayList<>();
+        store.streamMessagesBetween(1669947800L, 1669947801L, range::add);
+        Assert.assertEquals(Arrays.asList(new Message(2, 1, "message 0", 1669947800L),
+                new Message(3, 1, "updated", 1669947800L), new Message(5, 1, "message 3", 1669947801L)), range);
+
+        range.clear();
+        store.streamMessagesPostedByBetween(1, Long.MIN_VALUE, 1669947800L, range::add);
+        Assert.assertEquals(3, range.size());
+        Assert.assertEquals(1, range.get(0).getMessage_id());
+
+        range.clear();
+        store.streamMessagesPostedByBetween(2, Long.MIN_VALUE, Long.MAX_VALUE, range::add);
+        Assert.assertTrue(range.isEmpty());
+    }
+
+    /**
+     * A snapshot should restore every message, including updates, and keep handing out new message_ids after the
+     * highest one ever used.
+     */
+    @Test
+    public void snapshotRoundTrip() {
+        store.insertMessage(new Message(1, "second", 1669947793));
+        store.insertMessage(new Message(1, "third", 1669947794));
+        store.updateMessageById(2, "second, edited");
+        store.deleteMessageById(3);
+        store.snapshot(snapshot);
+
+        InMemoryMessageStore restored = new InMemoryMessageStore(new AccountDAO());
+        restored.loadSnapshot(snapshot);
+
+        Assert.assertEquals(store.getAllMessages(), restored.getAllMessages());
+        Assert.assertEquals("second, edited", restored.getMessageById(2).getMessage_text());
+        Assert.assertEquals(4, restored.insertMessage(new Message(1, "fourth", 1669947795)).getMessage_id());
+    }
+
+    /**
+     * Changes logged after a snapshot should be recovered by loading the snapshot and replaying the write-ahead log.
+     */
+    @Test
+    public void recoverFromSnapshotAndLog() throws Exception {
+        Path wal = Files.createTempFile("messages", ".wal");
+        try {
+            try (WriteAheadLog log = new WriteAheadLog(wal, 1)) {
+                store.recoverFrom(log);
+                store.insertMessage(new Message(1, "second", 1669947793));
+                store.snapshot(snapshot);
+                store.insertMessage(new Message(1, "third", 1669947794));
+                store.updateMessageById(2, "second, edited");
+                store.deleteMessageById(1);
+            }
+
+            InMemoryMessageStore recovered = new InMemoryMessageStore(new AccountDAO());
+            recovered.loadSnapshot(snapshot);
+            try (WriteAheadLog log = new WriteAheadLog(wal, 1)) {
+                Assert.assertEquals(3, recovered.recoverFrom(log));
+            }
+            Assert.assertEquals(store.getAllMessages(), recovered.getAllMessages());
+            Assert.assertNull(recovered.getMessageById(1));
+            Assert.assertEquals("second, edited", recovered.getMessageById(2).getMessage_text());
+        } finally {
+            Files.deleteIfExists(wal);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Message;
+import Service.MessageBatchWriter;
+import Util.ConnectionUtil;
+
+public class MessageBatchWriterTest {
+    MessageBatchWriter batchWriter;
+    MessageDAO messageDAO;
+
+    /**
+     * Before every test, reset the database and start a batch writer that flushes every 3 messages or 50ms.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDAO = new MessageDAO();
+        batchWriter = new MessageBatchWriter(messageDAO, new AccountDAO(), 3, 50, 100);
+    }
+
+    @After
+    public void tearDown() {
+        batchWriter.close();
+    }
+
+    /**
+     * Every submitted message should be inserted with its own generated message_id, across more than one batch.
+     */
+    @Test
+    public void batchedMessagesAreInserted() throws Exception {
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(batchWriter.submit(new Message(1, "batched message " + i, 1669947792L + i)));
+        }
+        for (int i = 0; i < 5; i++) {
+            Message expected = new Message(i + 2, 1, "batched message " + i, 1669947792L + i);
+            Assert.assertEquals(expected, futures.get(i).get());
+            Assert.assertEquals(expected, messageDAO.getMessageById(i + 2));
+        }
+    }
+
+    /**
+     * A message from an account that does not exist should complete with null without failing the rest of its batch.
+     */
+    @Test
+    public void unknownPosterOnlyFailsItself() throws Exception {
+        CompletableFuture<Message> valid = batchWriter.submit(new Message(1, "valid message", 1669947792L));
+        CompletableFuture<Message> invalid = batchWriter.submit(new Message(50, "invalid message", 1669947792L));
+
+        Assert.assertEquals(new Message(2, 1, "valid message", 1669947792L), valid.get());
+        Assert.assertNull(invalid.get());
+        Assert.assertEquals(2, messageDAO.getAllMessages().size());
+    }
+}
@@ -0,0 +1,90 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.Message;
+import Service.MessageCache;
+import Util.CacheStats;
+import Util.JsonUtil;
+
+public class MessageCacheTest {
+    MessageCache cache;
+
+    /**
+     * Before every test, create a cache that holds one message per segment.
+     */
+    @Before
+    public void setUp() {
+        cache = new MessageCache(64);
+    }
+
+    /**
+     * A cached message should be returned as an equal copy, and lookups should be counted as hits or misses.
+     */
+    @Test
+    public void getReturnsCopies() {
+        Message message = new Message(1, 1, "test message 1", 1669947792);
+        cache.put(message, cache.version(1));
+
+        Message cached = cache.get(1);
+        Assert.assertEquals(message, cached);
+        cached.setMessage_text("changed");
+        Assert.assertEquals(message, cache.get(1));
+        Assert.assertNull(cache.get(2));
+
+        CacheStats stats = cache.getStats();
+        Assert.assertEquals(2, stats.getHits());
+        Assert.assertEquals(1, stats.getMisses());
+    }
+
+    /**
+     * An invalidated message should be dropped, and a read that started before the invalidation should not be able to
+     * cache what it read.
+     */
+    @Test
+    public void invalidateRejectsOlderReads() {
+        cache.put(new Message(1, 1, "test message 1", 1669947792), cache.version(1));
+        long version = cache.version(1);
+        cache.invalidate(1);
+        Assert.assertNull(cache.get(1));
+
+        cache.put(new Message(1, 1, "test message 1", 1669947792), version);
+        Assert.assertNull(cache.get(1));
+
+        cache.put(new Message(1, 1, "updated message", 1669947792), cache.version(1));
+        Assert.assertEquals("updated message", cache.get(1).getMessage_text());
+    }
+
+    /**
+     * A cached message's JSON encoding should be built once and reused, and rebuilt after the message is invalidated
+     * and cached again.
+     */
+    @Test
+    public void jsonIsReusedUntilInvalidated() throws Exception {
+        Message message = new Message(1, 1, "test message 1", 1669947792);
+        cache.put(message, cache.version(1));
+
+        byte[] json = cache.getJson(1);
+        Assert.assertArrayEquals(JsonUtil.MESSAGE_WRITER.writeValueAsBytes(message), json);
+        Assert.assertSame(json, cache.getJson(1));
+
+        cache.invalidate(1);
+        Assert.assertNull(cache.getJson(1));
+        Message updated = new Message(1, 1, "updated message", 1669947792);
+        cache.put(updated, cache.version(1));
+        Assert.assertArrayEquals(JsonUtil.MESSAGE_WRITER.writeValueAsBytes(updated), cache.getJson(1));
+    }
+
+    /**
+     * Once a segment is full, its least recently used message should be evicted.
+     */
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        cache.put(new Message(1, 1, "test message 1", 1669947792), cache.version(1));
+        cache.put(new Message(65, 1, "test message 65", 1669947792), cache.version(65));
+
+        Assert.assertNull(cache.get(1));
+        Assert.assertNotNull(cache.get(65));
+        Assert.assertEquals(1, cache.getStats().getSize());
+    }
+}
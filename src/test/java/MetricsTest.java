@@ -0,0 +1,91 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.LatencyHistogram;
+import io.javalin.Javalin;
+
+public class MetricsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1, then GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text with the request counted under its route pattern and the query it ran timed
+     */
+    @Test
+    public void metricsIncludeRouteAndQuery() throws IOException, InterruptedException {
+        HttpRequest messageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        Assert.assertEquals(200, webClient.send(messageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest metricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        HttpResponse<String> response = webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString());
+        String body = response.body();
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        Assert.assertTrue(body, body.contains(
+                "http_requests_total{method=\"GET\",route=\"messages/{message_id}\",status=\"200\"}"));
+        Assert.assertTrue(body, body.contains(
+                "http_request_duration_seconds{method=\"GET\",route=\"messages/{message_id}\",quantile=\"0.99\"}"));
+        Assert.assertTrue(body, body.contains("dao_query_duration_seconds_count{query=\"MessageDAO.getMessageById\"}"));
+        Assert.assertTrue(body, body.contains("dao_query_errors_total{query=\"MessageDAO.getMessageById\"} 0"));
+    }
+
+    /**
+     * Quantiles of a LatencyHistogram should be within the bucket precision of the true values.
+     */
+    @Test
+    public void histogramQuantilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+        Assert.assertEquals(100000, histogram.getCount());
+        assertWithin(50_000_000L, histogram.getValueAtQuantile(0.5));
+        assertWithin(99_000_000L, histogram.getValueAtQuantile(0.99));
+        assertWithin(99_900_000L, histogram.getValueAtQuantile(0.999));
+        Assert.assertEquals(0, new LatencyHistogram().getValueAtQuantile(0.99));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        Assert.assertTrue(expected + " vs " + actual, actual >= expected && actual <= expected * 1.07);
+    }
+}
@@ -0,0 +1,92 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.AccountCache;
+import Model.Account;
+import Service.AccountService;
+import Util.ConnectionUtil;
+import Util.PasswordHasher;
+
+public class PasswordHasherTest {
+    PasswordHasher hasher;
+
+    /**
+     * Before every test, reset the database and create a hasher with a low work factor.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        hasher = new PasswordHasher(1000, 100);
+    }
+
+    /**
+     * Hashes should be salted, carry their work factor, and only verify the password they were made from.
+     */
+    @Test
+    public void hashesAreSaltedAndVerified() {
+        String first = hasher.hash("password");
+        String second = hasher.hash("password");
+
+        Assert.assertTrue(first.startsWith("pbkdf2-sha256$1000$"));
+        Assert.assertNotEquals(first, second);
+        Assert.assertTrue(hasher.verify("password", first));
+        Assert.assertTrue(hasher.verify("password", first));
+        Assert.assertFalse(hasher.verify("Password", first));
+        Assert.assertFalse(hasher.verify("password", null));
+        Assert.assertFalse(hasher.verify("password", "pbkdf2-sha256$1000$not-base64!$x"));
+        Assert.assertFalse(hasher.needsRehash(first));
+        Assert.assertTrue(new PasswordHasher(2000, 0).needsRehash(first));
+        Assert.assertTrue(new PasswordHasher(2000, 0).verify("password", first));
+    }
+
+    /**
+     * A plaintext password from before hashing should still log in once, and be replaced by a hash when it does.
+     */
+    @Test
+    public void plaintextPasswordIsRehashedOnLogin() throws SQLException {
+        AccountService accountService = new AccountService(new AccountDAO(new AccountCache(10)), hasher);
+
+        Assert.assertNull(accountService.verifyAccount(new Account("testuser1", "wrong")));
+        Assert.assertNull(accountService.verifyAccount(new Account("nobody", "password")));
+        Assert.assertEquals(new Account(1, "testuser1", "password"),
+                accountService.verifyAccount(new Account("testuser1", "password")));
+
+        String stored = storedPassword(1);
+        Assert.assertTrue(stored.startsWith("pbkdf2-sha256$1000$"));
+        Assert.assertEquals(new Account(1, "testuser1", "password"),
+                accountService.verifyAccount(new Account("testuser1", "password")));
+        Assert.assertEquals(stored, storedPassword(1));
+    }
+
+    /**
+     * Registering should store a hash, never the password itself.
+     */
+    @Test
+    public void registrationStoresHash() throws SQLException {
+        AccountService accountService = new AccountService(new AccountDAO(new AccountCache(10)), hasher);
+
+        Account added = accountService.addAccount(new Account("user", "secret"));
+
+        Assert.assertEquals(new Account(2, "user", "secret"), added);
+        Assert.assertTrue(hasher.verify("secret", storedPassword(2)));
+        Assert.assertNotEquals("secret", storedPassword(2));
+    }
+
+    private String storedPassword(int account_id) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement ps = connection.prepareStatement("select password from account where account_id = ?")) {
+            ps.setInt(1, account_id);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.RateLimiter;
+import io.javalin.Javalin;
+
+public class RateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    RateLimiter<String> limiter;
+    Javalin app;
+
+    /**
+     * Before every test, create a limiter that allows bursts of 3 requests and then 10 per second, and forgets
+     * clients after a second.
+     */
+    @Before
+    public void setUp() {
+        limiter = new RateLimiter<>(10, 3, 1000);
+    }
+
+    @After
+    public void tearDown() {
+        if (app != null) {
+            app.stop();
+        }
+        System.clearProperty("limits.ipRate");
+        System.clearProperty("limits.ipBurst");
+    }
+
+    /**
+     * A key should get its burst at once, then be rejected with the time until its next token, and refill at the rate;
+     * other keys should not be affected.
+     */
+    @Test
+    public void burstThenRate() {
+        long now = 0;
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, limiter.tryAcquire("a", now));
+        }
+        Assert.assertEquals(SECOND / 10, limiter.tryAcquire("a", now));
+        Assert.assertEquals(0, limiter.tryAcquire("b", now));
+        Assert.assertEquals(1, limiter.getRejected());
+
+        Assert.assertEquals(0, limiter.tryAcquire("a", now + SECOND / 10));
+        Assert.assertTrue(limiter.tryAcquire("a", now + SECOND / 10) > 0);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, limiter.tryAcquire("a", now + SECOND));
+        }
+        Assert.assertTrue(limiter.tryAcquire("a", now + SECOND) > 0);
+    }
+
+    /**
+     * Buckets should be dropped once they have been full for the idle time, and not before.
+     */
+    @Test
+    public void idleBucketsAreEvicted() {
+        long now = System.nanoTime();
+        limiter.tryAcquire("a", now);
+        limiter.tryAcquire("b", now + SECOND);
+        Assert.assertEquals(2, limiter.getSize());
+
+        limiter.evictIdle(now + SECOND + SECOND / 10);
+        Assert.assertEquals(1, limiter.getSize());
+        limiter.evictIdle(now + 3 * SECOND);
+        Assert.assertEquals(0, limiter.getSize());
+    }
+
+    /**
+     * Sending more POST localhost:8080/messages requests than the per-IP burst
+     *
+     * Expected Response:
+     *  Status Code: 429 once the burst is spent, with a Retry-After header
+     */
+    @Test
+    public void postOverIpLimit() throws IOException, InterruptedException {
+        System.setProperty("limits.ipRate", "1");
+        System.setProperty("limits.ipBurst", "2");
+        ConnectionUtil.resetTestDatabase();
+        app = new SocialMediaController().startAPI();
+        app.start(8080);
+        HttpClient webClient = HttpClient.newHttpClient();
+
+        HttpResponse<String> response = null;
+        for (int i = 0; i < 3; i++) {
+            HttpRequest postRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\": 1, \"message_text\": \"hello " + i + "\", "
+                            + "\"time_posted_epoch\": 1669947792}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+            if (i < 2) {
+                Assert.assertEquals(200, response.statusCode());
+            }
+        }
+        Assert.assertEquals(429, response.statusCode());
+        Assert.assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+
+        HttpRequest getRequest = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages")).build();
+        Assert.assertEquals(200, webClient.send(getRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+}
@@ -6,11 +6,13 @@ import java.net.http.HttpResponse;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -99,10 +101,33 @@ public class RetrieveAllMessagesTest {
 
 
 
+    /**
+     * Sending an http request to GET localhost:8080/messages when the query fails
+     *
+     * Expected Response:
+     *  Status Code: 500
+     *  Response Body: not a JSON list of messages
+     */
+    @Test
+    public void getAllMessagesQueryFails() throws IOException, InterruptedException, SQLException {
+        Assume.assumeFalse("the in-memory store does not query the database", "memory".equals(System.getProperty("messages.store")));
+        try (Connection conn = ConnectionUtil.getConnection();
+                Statement statement = conn.createStatement()) {
+            statement.execute("drop table message");
+        }
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(500, response.statusCode());
+        Assert.assertFalse(response.body().startsWith("["));
+    }
+
     private void removeInitialMessage(){
-        try {
-                Connection conn = ConnectionUtil.getConnection();
-                PreparedStatement ps = conn.prepareStatement("delete from message where message_id = ?");
+        try (Connection conn = ConnectionUtil.getConnection();
+                PreparedStatement ps = conn.prepareStatement("delete from message where message_id = ?")) {
                 ps.setInt(1, 1);
                 ps.executeUpdate();
         } catch (SQLException e) {
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesByTimeTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add a second account and three more messages, restart the Javalin app,
+     * and create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        addMessages();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?since=1669947793&until=1669947794
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the messages posted from 1669947793 to 1669947794, oldest first
+     */
+    @Test
+    public void getMessagesBetween() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages?since=1669947793&until=1669947794");
+
+        Assert.assertEquals(200, response.statusCode());
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(3, 2, "test message 3", 1669947793));
+        expectedResult.add(new Message(2, 1, "test message 2", 1669947794));
+        expectedResult.add(new Message(4, 2, "test message 4", 1669947794));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/2/messages?since=1669947794
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of account 2's messages posted at or after 1669947794, oldest first
+     */
+    @Test
+    public void getAccountMessagesSince() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/2/messages?since=1669947794");
+
+        Assert.assertEquals(200, response.statusCode());
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(4, 2, "test message 4", 1669947794));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request with until before since, a range that is not a number, or a range and a paging cursor
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesBetweenInvalid() throws IOException, InterruptedException {
+        Assert.assertEquals(400, get("/messages?since=1669947794&until=1669947793").statusCode());
+        Assert.assertEquals(400, get("/messages?since=yesterday").statusCode());
+        Assert.assertEquals(400, get("/messages?since=1669947794&limit=10").statusCode());
+        Assert.assertEquals(400, get("/accounts/1/messages?until=1669947794&before=x").statusCode());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void addMessages(){
+        try (Connection conn = ConnectionUtil.getConnection();
+                PreparedStatement account = conn.prepareStatement("insert into account (username, password) values ('testuser2', 'password')");
+                PreparedStatement ps = conn.prepareStatement("insert into message (posted_by, message_text, time_posted_epoch) values (?, ?, ?)")) {
+                account.executeUpdate();
+                ps.setInt(1, 1);
+                ps.setString(2, "test message 2");
+                ps.setLong(3, 1669947794L);
+                ps.executeUpdate();
+                ps.setInt(1, 2);
+                ps.setString(2, "test message 3");
+                ps.setLong(3, 1669947793L);
+                ps.executeUpdate();
+                ps.setInt(1, 2);
+                ps.setString(2, "test message 4");
+                ps.setLong(3, 1669947794L);
+                ps.executeUpdate();
+        } catch (SQLException e) {
+                e.printStackTrace();
+        }
+    }
+}
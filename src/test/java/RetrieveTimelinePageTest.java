@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveTimelinePageTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add two more messages (one of them with the same time as the first),
+     * restart the Javalin app, and create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        addMessages();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?limit=2
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the two newest messages, newest first
+     *  X-Next-Cursor: 1669947792:2
+     */
+    @Test
+    public void getTimelineFirstPage() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages?limit=2"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("1669947792:2", response.headers().firstValue("X-Next-Cursor").orElse(null));
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(3, 1, "test message 3", 1669947800));
+        expectedResult.add(new Message(2, 1, "test message 2", 1669947792));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?limit=2&before=1669947792:2
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the oldest message, which has the same time as the cursor
+     *  X-Next-Cursor: not present
+     */
+    @Test
+    public void getTimelineLastPage() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages?limit=2&before=1669947792:2"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertFalse(response.headers().firstValue("X-Next-Cursor").isPresent());
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?before=bad
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getTimelineInvalidCursor() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages?before=bad"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+    }
+
+    /**
+     * The timeline page query should seek on the (posted_by, time_posted_epoch, message_id) index.
+     */
+    @Test
+    public void timelineQueryUsesIndex() throws SQLException {
+        try (Connection conn = ConnectionUtil.getConnection();
+                PreparedStatement ps = conn.prepareStatement("EXPLAIN " + MessageDAO.MESSAGES_POSTED_BY_BEFORE_SQL)) {
+            ps.setInt(1, 1);
+            ps.setLong(2, 1669947792L);
+            ps.setLong(3, 1669947792L);
+            ps.setInt(4, 2);
+            ps.setInt(5, 2);
+            try (ResultSet rs = ps.executeQuery()) {
+                Assert.assertTrue(rs.next());
+                String plan = rs.getString(1);
+                Assert.assertTrue(plan, plan.toUpperCase().contains("MESSAGE_POSTED_BY_TIME_IDX"));
+                Assert.assertFalse(plan, plan.toUpperCase().contains("TABLE SCAN"));
+            }
+        }
+    }
+
+
+    private void addMessages(){
+        try (Connection conn = ConnectionUtil.getConnection();
+                PreparedStatement ps = conn.prepareStatement("insert into message (posted_by, message_text, time_posted_epoch) values (1, ?, ?)")) {
+                ps.setString(1, "test message 2");
+                ps.setLong(2, 1669947792L);
+                ps.executeUpdate();
+                ps.setString(1, "test message 3");
+                ps.setLong(2, 1669947800L);
+                ps.executeUpdate();
+        } catch (SQLException e) {
+                e.printStackTrace();
+        }
+    }
+
+}
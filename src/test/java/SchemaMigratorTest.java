@@ -0,0 +1,93 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.SchemaMigrator;
+
+public class SchemaMigratorTest {
+    Connection connection;
+
+    /**
+     * Before every test, open a connection to a new private in-memory database.
+     */
+    @Before
+    public void setUp() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:migratortest");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+        connection = dataSource.getConnection();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * An empty database should get every script, and migrating again should change nothing.
+     */
+    @Test
+    public void emptyDatabaseGetsEveryScript() throws SQLException {
+        int version = SchemaMigrator.migrate(connection);
+
+        Assert.assertTrue(version >= 3);
+        Assert.assertEquals(version, SchemaMigrator.migrate(connection));
+        Assert.assertEquals(version, count("select count(*) from schema_version"));
+    }
+
+    /**
+     * A database whose tables were created before migrations existed should take V1 as its baseline and still get
+     * the later scripts, keeping its rows.
+     */
+    @Test
+    public void existingTablesAreBaselined() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table account (account_id int primary key auto_increment, "
+                    + "username varchar(255) unique, password varchar(255))");
+            statement.execute("create table message (message_id int primary key auto_increment, posted_by int, "
+                    + "message_text varchar(255), time_posted_epoch bigint, "
+                    + "foreign key (posted_by) references account(account_id))");
+            statement.execute("insert into account (username, password) values ('testuser1', 'password')");
+        }
+
+        int version = SchemaMigrator.migrate(connection);
+
+        Assert.assertTrue(version >= 3);
+        Assert.assertEquals(1, count("select count(*) from schema_version where version = 1 "
+                + "and description like 'Baseline%'"));
+        Assert.assertEquals(1, count("select count(*) from information_schema.indexes "
+                + "where index_name = 'MESSAGE_TIME_IDX'"));
+        Assert.assertEquals(1, count("select count(*) from account"));
+    }
+
+    /**
+     * A failing script should stop the migration with an exception and not be recorded.
+     */
+    @Test
+    public void failedScriptIsNotRecorded() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table schema_version (version int primary key, description varchar(255), "
+                    + "applied_at timestamp default current_timestamp)");
+            // V1 recorded, but its tables missing: V2 indexes a message table that does not exist
+            statement.execute("insert into schema_version (version, description) values (1, 'tables')");
+        }
+
+        Assert.assertThrows(SQLException.class, () -> SchemaMigrator.migrate(connection));
+        Assert.assertEquals(1, SchemaMigrator.currentVersion(connection));
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.InMemoryMessageStore;
+import DAO.MessageStore;
+import Model.Message;
+import Service.SearchIndex;
+
+public class SearchIndexTest {
+    SearchIndex index;
+
+    /**
+     * Before every test, create an index built from an empty store.
+     */
+    @Before
+    public void setUp() {
+        index = new SearchIndex();
+        index.build(new InMemoryMessageStore(new AccountDAO()));
+    }
+
+    /**
+     * Words should be lowercase runs of letters and digits, counted.
+     */
+    @Test
+    public void wordsAreLowercaseRunsOfLettersAndDigits() {
+        Assert.assertEquals(Arrays.asList("hello", "world", "42"),
+                new ArrayList<>(SearchIndex.words("Hello, world! HELLO 42...").keySet()));
+        Assert.assertEquals(Integer.valueOf(2), SearchIndex.words("Hello, world! HELLO 42...").get("hello"));
+        Assert.assertTrue(SearchIndex.words(" ?! ").isEmpty());
+    }
+
+    /**
+     * Only messages with every word should match, the closer matches first and then the newest.
+     */
+    @Test
+    public void resultsMatchAllWordsAndAreRanked() {
+        index.put(new Message(1, 1, "the quick brown fox", 1));
+        index.put(new Message(2, 1, "the lazy dog", 1));
+        index.put(new Message(3, 1, "fox fox fox", 1));
+        index.put(new Message(4, 1, "a quick fox", 1));
+
+        Assert.assertEquals(Arrays.asList(3, 4, 1), index.search("fox", 0, 10));
+        Assert.assertEquals(Arrays.asList(4, 1), index.search("QUICK fox", 0, 10));
+        Assert.assertEquals(Arrays.asList(1), index.search("fox", 2, 10));
+        Assert.assertEquals(new ArrayList<>(), index.search("fox cat", 0, 10));
+    }
+
+    /**
+     * Updated and deleted messages should stop matching their old words, including across many blocks and after the
+     * stale entries have been compacted away.
+     */
+    @Test
+    public void updatesAndDeletesAcrossCompaction() {
+        for (int id = 1; id <= 5000; id++) {
+            index.put(new Message(id, 1, "common word" + (id % 10), 1));
+        }
+        for (int id = 1; id <= 5000; id += 2) {
+            index.put(new Message(id, 1, "edited", 1));
+        }
+        for (int id = 2; id <= 100; id += 2) {
+            index.remove(id);
+        }
+
+        Assert.assertEquals(2450, index.search("common", 0, 10000).size());
+        Assert.assertEquals(2500, index.search("edited", 0, 10000).size());
+        Assert.assertEquals(490, index.search("common word4", 0, 10000).size());
+        List<Integer> word3 = index.search("word3", 0, 10000);
+        Assert.assertTrue(word3.isEmpty());
+        Assert.assertEquals(4950, index.size());
+    }
+
+    /**
+     * Skipping blocks that cannot beat the results found so far should not change the first page of results.
+     */
+    @Test
+    public void skippedBlocksDoNotChangeTheBestResults() {
+        Random random = new Random(7);
+        for (int id = 1; id <= 20000; id++) {
+            StringBuilder text = new StringBuilder();
+            int length = 1 + random.nextInt(20);
+            for (int word = 0; word < length; word++) {
+                text.append('w').append(random.nextInt(8)).append(' ');
+            }
+            index.put(new Message(id, 1, text.toString(), 1));
+        }
+        for (String query : new String[] {"w0", "w1 w2", "w3 w4 w5"}) {
+            List<Integer> all = index.search(query, 0, 20000);
+            Assert.assertEquals(all.subList(0, 10), index.search(query, 0, 10));
+            Assert.assertEquals(all.subList(10, 30), index.search(query, 10, 20));
+        }
+    }
+
+    /**
+     * Searching the store without the index, as while it is being built, should give the same results as the index.
+     */
+    @Test
+    public void scanMatchesTheIndex() {
+        MessageStore store = store(2000, null);
+        index = new SearchIndex();
+        index.build(store);
+
+        Assert.assertTrue(index.isBuilt());
+        for (String query : new String[] {"w0", "w1 w2", "w3 w4 w5", "w9"}) {
+            Assert.assertEquals(index.search(query, 0, 50), SearchIndex.scan(store, query, 0, 50));
+            Assert.assertEquals(index.search(query, 50, 20), SearchIndex.scan(store, query, 50, 20));
+        }
+    }
+
+    /**
+     * Writes made while the index is being built should not be lost, even for messages the build has already read.
+     */
+    @Test
+    public void writesDuringBuildAreReplayed() {
+        index = new SearchIndex();
+        index.build(store(2000, () -> {
+            index.put(new Message(1, 1, "edited", 1));
+            index.remove(2);
+            index.put(new Message(2001, 1, "new", 1));
+        }));
+
+        Assert.assertEquals(Arrays.asList(1), index.search("edited", 0, 10));
+        Assert.assertEquals(Arrays.asList(2001), index.search("new", 0, 10));
+        Assert.assertFalse(index.search("w0 w1 w2 w3 w4 w5 w6 w7", 0, 2000).contains(2));
+        Assert.assertEquals(2000, index.size());
+    }
+
+    /**
+     * @return a store of count random messages of the words w0 to w7; midway through reading them, duringRead (if
+     * any) is run.
+     */
+    private static MessageStore store(int count, Runnable duringRead) {
+        return new InMemoryMessageStore(new AccountDAO()) {
+            @Override
+            public void streamAllMessages(Consumer<Message> consumer) {
+                Random random = new Random(7);
+                for (int id = 1; id <= count; id++) {
+                    if (id == count / 2 && duringRead != null) {
+                        duringRead.run();
+                    }
+                    StringBuilder text = new StringBuilder();
+                    int length = 1 + random.nextInt(20);
+                    for (int word = 0; word < length; word++) {
+                        text.append('w').append(random.nextInt(8)).append(' ');
+                    }
+                    consumer.accept(new Message(id, 1, text.toString(), 1));
+                }
+            }
+        };
+    }
+}
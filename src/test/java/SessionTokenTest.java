@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageStore;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.SessionTokens;
+import io.javalin.Javalin;
+
+public class SessionTokenTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Tokens should only verify under the key that signed them, unaltered and before they expire.
+     */
+    @Test
+    public void tokensAreSignedAndExpire() {
+        SessionTokens tokens = new SessionTokens(new byte[] {1, 2, 3}, 60);
+        String token = tokens.issue(42);
+
+        Assert.assertEquals(42, tokens.verify(token));
+        Assert.assertEquals(-1, tokens.verify("43" + token.substring(2)));
+        Assert.assertEquals(-1, tokens.verify(token + "x"));
+        Assert.assertEquals(-1, tokens.verify("not a token"));
+        Assert.assertEquals(-1, new SessionTokens(new byte[] {1, 2, 4}, 60).verify(token));
+        Assert.assertEquals(-1, new SessionTokens(new byte[] {1, 2, 3}, -1).verify(
+                new SessionTokens(new byte[] {1, 2, 3}, -1).issue(42)));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with the token from POST localhost:8080/login and no
+     * posted_by
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the message, posted by the token's account
+     */
+    @Test
+    public void postMessageWithToken() throws IOException, InterruptedException {
+        String token = login();
+
+        HttpResponse<String> response = postMessage("Bearer " + token,
+                "{\"message_text\": \"hello token\", \"time_posted_epoch\": 1669947792}");
+
+        Assert.assertEquals(200, response.statusCode());
+        Message expectedResult = new Message(2, 1, "hello token", 1669947792);
+        Assert.assertEquals(expectedResult, objectMapper.readValue(response.body(), Message.class));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a token and the posted_by of another account
+     *
+     * Expected Response:
+     *  Status Code: 403
+     */
+    @Test
+    public void postMessageForAnotherAccount() throws IOException, InterruptedException {
+        String token = login();
+
+        HttpResponse<String> response = postMessage("Bearer " + token,
+                "{\"posted_by\": 2, \"message_text\": \"hello\", \"time_posted_epoch\": 1669947792}");
+
+        Assert.assertEquals(403, response.statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a forged or malformed token
+     *
+     * Expected Response:
+     *  Status Code: 401
+     */
+    @Test
+    public void postMessageWithInvalidToken() throws IOException, InterruptedException {
+        String token = login();
+        String body = "{\"posted_by\": 1, \"message_text\": \"hello\", \"time_posted_epoch\": 1669947792}";
+
+        Assert.assertEquals(401, postMessage("Bearer " + token.substring(0, token.length() - 1), body).statusCode());
+        Assert.assertEquals(401, postMessage("Bearer 1.99999999999.x", body).statusCode());
+        Assert.assertEquals(401, postMessage("Basic dGVzdHVzZXIxOnBhc3N3b3Jk", body).statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/bulk without a token, with a forged one, and with a valid
+     * one but messages posted_by another account
+     *
+     * Expected Response:
+     *  Status Code: 401 without a valid token; with one, 200 and a 403 result for every message, none inserted
+     */
+    @Test
+    public void bulkImportNeedsMatchingToken() throws IOException, InterruptedException {
+        String token = login();
+        String body = "[{\"posted_by\": 2, \"message_text\": \"hello\", \"time_posted_epoch\": 1669947792}]";
+
+        Assert.assertEquals(401, send("POST", "/messages/bulk", null, body).statusCode());
+        Assert.assertEquals(401, send("POST", "/messages/bulk", "Bearer 1.99999999999.x", body).statusCode());
+
+        HttpResponse<String> response = send("POST", "/messages/bulk", "Bearer " + token, body);
+        Assert.assertEquals(200, response.statusCode());
+        JsonNode results = objectMapper.readTree(response.body());
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals(403, results.get(0).get("status").asInt());
+        Assert.assertEquals(1, MessageStore.fromConfig().getAllMessages().size());
+    }
+
+    /**
+     * Sending http requests to PATCH and DELETE localhost:8080/messages/1, posted by testuser1, with the token of
+     * another account
+     *
+     * Expected Response:
+     *  Status Code: 403, and the message is unchanged
+     */
+    @Test
+    public void changeAnotherAccountsMessage() throws IOException, InterruptedException {
+        HttpResponse<String> registered = send("POST", "/register", null,
+                "{\"username\": \"testuser2\", \"password\": \"password\"}");
+        Assert.assertEquals(200, registered.statusCode());
+        String token = login("testuser2");
+
+        Assert.assertEquals(403, send("PATCH", "/messages/1", "Bearer " + token,
+                "{\"message_text\": \"not yours\"}").statusCode());
+        Assert.assertEquals(403, send("DELETE", "/messages/1", "Bearer " + token, "").statusCode());
+        Assert.assertEquals("test message 1", MessageStore.fromConfig().getMessageById(1).getMessage_text());
+    }
+
+    private String login() throws IOException, InterruptedException {
+        return login("testuser1");
+    }
+
+    private String login(String username) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"" + username + "\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return response.headers().firstValue("X-Session-Token").orElseThrow();
+    }
+
+    private HttpResponse<String> postMessage(String authorization, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .header("Authorization", authorization)
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(String method, String path, String authorization, String body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json");
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
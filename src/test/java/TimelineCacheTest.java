@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.Message;
+import Service.TimelineCache;
+
+public class TimelineCacheTest {
+    TimelineCache cache;
+
+    /**
+     * Before every test, create a cache that holds the newest three messages of each account and at most eight
+     * slots in total: one per message a timeline can hold, plus one per account.
+     */
+    @Before
+    public void setUp() {
+        cache = new TimelineCache(3, 8);
+    }
+
+    /**
+     * A loaded timeline should serve pages newest first, and new messages should be added at its head.
+     */
+    @Test
+    public void pagesAreServedNewestFirst() {
+        load(1, true, new Message(2, 1, "second", 200), new Message(1, 1, "first", 100));
+        cache.onInsert(new Message(3, 1, "third", 300));
+
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(3, 1, "third", 300));
+        expected.add(new Message(2, 1, "second", 200));
+        Assert.assertEquals(expected, cache.getPage(1, Long.MAX_VALUE, Integer.MAX_VALUE, 2));
+
+        expected.clear();
+        expected.add(new Message(1, 1, "first", 100));
+        Assert.assertEquals(expected, cache.getPage(1, 200, 2, 2));
+    }
+
+    /**
+     * Once a full timeline drops its oldest message, pages reaching past the cached messages should be misses, and
+     * full reads should no longer be served.
+     */
+    @Test
+    public void deepPagesOfIncompleteTimelinesMiss() {
+        load(1, true, new Message(3, 1, "third", 300), new Message(2, 1, "second", 200), new Message(1, 1, "first", 100));
+        Assert.assertEquals(3, cache.getAll(1).size());
+
+        cache.onInsert(new Message(4, 1, "fourth", 400));
+
+        Assert.assertEquals(3, cache.getPage(1, Long.MAX_VALUE, Integer.MAX_VALUE, 3).size());
+        Assert.assertNull(cache.getPage(1, Long.MAX_VALUE, Integer.MAX_VALUE, 4));
+        Assert.assertNull(cache.getAll(1));
+    }
+
+    /**
+     * Messages posted out of time order should be placed by time_posted_epoch, and updates and deletes should be
+     * reflected in place.
+     */
+    @Test
+    public void writesKeepTimelineInOrder() {
+        load(1, true, new Message(2, 1, "second", 300), new Message(1, 1, "first", 100));
+        cache.onInsert(new Message(3, 1, "late", 200));
+        cache.onUpdate(new Message(1, 1, "edited", 100));
+        cache.onDelete(new Message(2, 1, "second", 300));
+
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(3, 1, "late", 200));
+        expected.add(new Message(1, 1, "edited", 100));
+        Assert.assertEquals(expected, cache.getPage(1, Long.MAX_VALUE, Integer.MAX_VALUE, 10));
+
+        expected.sort((a, b) -> a.getMessage_id() - b.getMessage_id());
+        Assert.assertEquals(expected, cache.getAll(1));
+    }
+
+    /**
+     * A write to an account while it is being loaded should cancel the load, since the loaded messages may not
+     * include the write.
+     */
+    @Test
+    public void writeDuringLoadCancelsIt() {
+        long token = cache.startLoad(1);
+        Assert.assertEquals(0, cache.startLoad(1));
+        cache.onInsert(new Message(2, 1, "second", 200));
+        List<Message> stale = new ArrayList<>();
+        stale.add(new Message(1, 1, "first", 100));
+        cache.finishLoad(1, token, stale, true);
+
+        Assert.assertNull(cache.getPage(1, Long.MAX_VALUE, Integer.MAX_VALUE, 10));
+    }
+
+    /**
+     * Once more than eight slots are used, the least recently used accounts should be evicted.
+     */
+    @Test
+    public void leastRecentlyUsedAccountIsEvicted() {
+        load(1, true, new Message(2, 1, "second", 200), new Message(1, 1, "first", 100));
+        load(2, true, new Message(4, 2, "second", 200), new Message(3, 2, "first", 100));
+        cache.getPage(1, Long.MAX_VALUE, Integer.MAX_VALUE, 1);
+        load(3, true, new Message(6, 3, "second", 200), new Message(5, 3, "first", 100));
+
+        Assert.assertNotNull(cache.getAll(1));
+        Assert.assertNull(cache.getAll(2));
+        Assert.assertNotNull(cache.getAll(3));
+        Assert.assertEquals(6, cache.getStats().getSize());
+    }
+
+    /**
+     * Timelines should be loaded with only the slots of the messages they hold and grow as messages are added, and
+     * empty ones should still take one slot each, so loading many empty (or nonexistent) accounts evicts them instead
+     * of growing without bound.
+     */
+    @Test
+    public void emptyTimelinesAreCharged() {
+        load(1, true, new Message(1, 1, "first", 100));
+        Assert.assertEquals(2, cache.getStats().getSize());
+        cache.onInsert(new Message(2, 1, "second", 200));
+        Assert.assertEquals(4, cache.getStats().getSize());
+
+        for (int account_id = 100; account_id < 110; account_id++) {
+            load(account_id, true);
+        }
+
+        Assert.assertEquals(8, cache.getStats().getSize());
+        Assert.assertNull(cache.getAll(1));
+        Assert.assertEquals(0, cache.getAll(109).size());
+    }
+
+    /**
+     * A cancelled load should free its account, so the next read can load it again.
+     */
+    @Test
+    public void cancelledLoadCanBeRetried() {
+        long token = cache.startLoad(1);
+        cache.cancelLoad(1, token);
+        Assert.assertEquals(0, cache.getStats().getSize());
+
+        load(1, true, new Message(1, 1, "first", 100));
+        Assert.assertEquals(1, cache.getAll(1).size());
+    }
+
+    private void load(int account_id, boolean complete, Message... newest) {
+        long token = cache.startLoad(account_id);
+        cache.finishLoad(account_id, token, List.of(newest), complete);
+    }
+}
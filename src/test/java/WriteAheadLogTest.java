@@ -0,0 +1,118 @@
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.WriteAheadLog;
+
+public class WriteAheadLogTest {
+    Path file;
+
+    /**
+     * Before every test, pick a new log file.
+     */
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("messages", ".wal");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Records appended with group commit should be durable once awaited, and replayed in order after reopening.
+     */
+    @Test
+    public void appendAndReplay() {
+        try (WriteAheadLog log = new WriteAheadLog(file, 5)) {
+            long last = 0;
+            for (int i = 0; i < 100; i++) {
+                last = log.append(("record " + i).getBytes(StandardCharsets.UTF_8));
+            }
+            log.awaitDurable(last);
+        }
+        List<String> replayed = replay(file);
+        Assert.assertEquals(100, replayed.size());
+        Assert.assertEquals("record 0", replayed.get(0));
+        Assert.assertEquals("record 99", replayed.get(99));
+    }
+
+    /**
+     * Without a flush interval, writers waiting at the same time should take turns forcing the log, and every record
+     * should be durable once its writer's wait returns.
+     */
+    @Test
+    public void concurrentWritersLeadTheirOwnFlushes() throws Exception {
+        try (WriteAheadLog log = new WriteAheadLog(file, 0)) {
+            Thread[] writers = new Thread[8];
+            for (int t = 0; t < writers.length; t++) {
+                int writer = t;
+                writers[t] = new Thread(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        log.awaitDurable(log.append(("record " + writer + " " + i).getBytes(StandardCharsets.UTF_8)));
+                    }
+                });
+                writers[t].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+        List<String> replayed = replay(file);
+        Assert.assertEquals(400, replayed.size());
+        Assert.assertTrue(replayed.contains("record 7 49"));
+    }
+
+    /**
+     * A record torn by a crash should be dropped when the log is opened, and appends should continue after the last
+     * complete record.
+     */
+    @Test
+    public void tornTailIsDropped() throws Exception {
+        try (WriteAheadLog log = new WriteAheadLog(file, 0)) {
+            log.append("first".getBytes(StandardCharsets.UTF_8));
+            log.append("second".getBytes(StandardCharsets.UTF_8));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+        try (WriteAheadLog log = new WriteAheadLog(file, 0)) {
+            log.append("third".getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(List.of("first", "third"), replay(file));
+    }
+
+    /**
+     * Truncating before a mark should keep only the records appended after it.
+     */
+    @Test
+    public void truncateBeforeMark() {
+        try (WriteAheadLog log = new WriteAheadLog(file, 0)) {
+            log.append("old".getBytes(StandardCharsets.UTF_8));
+            long mark = log.mark();
+            log.append("new".getBytes(StandardCharsets.UTF_8));
+            log.truncateBefore(mark);
+            log.append("newer".getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(List.of("new", "newer"), replay(file));
+    }
+
+    private static List<String> replay(Path file) {
+        List<String> records = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(file, 0)) {
+            log.replay(record -> records.add(StandardCharsets.UTF_8.decode(record).toString()));
+        }
+        return records;
+    }
+}